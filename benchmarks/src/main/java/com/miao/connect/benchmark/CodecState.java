@@ -0,0 +1,55 @@
+package com.miao.connect.benchmark;
+
+import com.miao.connect.benchmark.proto.GithubProtos;
+import java.lang.reflect.Type;
+import java.util.List;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * codec压测共用的数据.
+ *
+ * @author Ryan
+ */
+@State(Scope.Benchmark)
+public class CodecState {
+
+    public GithubUser user;
+    public List<GithubRepo> repos;
+    public byte[] userJson;
+    public byte[] reposJson;
+    public Type userType;
+    public Type reposType;
+    public byte[] userSmile;
+    public byte[] reposSmile;
+    public byte[] userCbor;
+    public byte[] reposCbor;
+    public GithubProtos.User userProto;
+    public GithubProtos.RepoList reposProto;
+    public byte[] userProtoBytes;
+    public byte[] reposProtoBytes;
+
+    /**
+     * 准备数据.
+     */
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        user = Payloads.user("Ryan-Miao");
+        repos = Payloads.repos("Ryan-Miao", Payloads.DEFAULT_REPO_COUNT);
+        userJson = Payloads.json(user);
+        reposJson = Payloads.json(repos);
+        userSmile = Payloads.smile(user);
+        reposSmile = Payloads.smile(repos);
+        userCbor = Payloads.cbor(user);
+        reposCbor = Payloads.cbor(repos);
+        userProto = Payloads.proto(userJson, GithubProtos.User.newBuilder());
+        reposProto = Payloads.proto(reposJson, GithubProtos.RepoList.newBuilder());
+        userProtoBytes = userProto.toByteArray();
+        reposProtoBytes = reposProto.toByteArray();
+        userType = GithubConnector.class.getMethod("getGithubUser", String.class)
+            .getGenericReturnType();
+        reposType = GithubConnector.class.getMethod("getRepos", String.class)
+            .getGenericReturnType();
+    }
+}
@@ -0,0 +1,120 @@
+package com.miao.connect.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.miao.connect.MyJacksonDecoder;
+import com.miao.connect.ProtobufDecoder;
+import com.miao.connect.benchmark.proto.GithubProtos;
+import feign.Response;
+import feign.codec.Decoder;
+import feign.codec.StringDecoder;
+import feign.gson.GsonDecoder;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 响应体解码，jackson-reader为原来的Reader解析方式，string为StringDecoder，只做字符解码作为参照.
+ * smile、cbor和protobuf解码同样内容的二进制格式，protobuf的返回类型为对应的生成类.
+ *
+ * @author Ryan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecoderBenchmark {
+
+    @Param({"jackson", "jackson-reader", "gson", "string", "smile", "cbor", "protobuf"})
+    public String codec;
+
+    private Decoder decoder;
+    private Response userResponse;
+    private Response reposResponse;
+    private Type userType;
+    private Type reposType;
+
+    /**
+     * 创建decoder和可重复读取的response.
+     */
+    @Setup
+    public void setUp(CodecState state) {
+        switch (codec) {
+            case "jackson":
+                decoder = new MyJacksonDecoder();
+                userType = state.userType;
+                reposType = state.reposType;
+                break;
+            case "jackson-reader":
+                decoder = new MyJacksonDecoder(Collections.emptyList(), false);
+                userType = state.userType;
+                reposType = state.reposType;
+                break;
+            case "gson":
+                decoder = new GsonDecoder();
+                userType = state.userType;
+                reposType = state.reposType;
+                break;
+            case "string":
+                decoder = new StringDecoder();
+                userType = String.class;
+                reposType = String.class;
+                break;
+            case "smile":
+                decoder = new MyJacksonDecoder(new ObjectMapper(new SmileFactory())
+                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+                userType = state.userType;
+                reposType = state.reposType;
+                userResponse = Payloads.response(state.userSmile, "application/x-jackson-smile");
+                reposResponse = Payloads.response(state.reposSmile,
+                    "application/x-jackson-smile");
+                return;
+            case "cbor":
+                decoder = new MyJacksonDecoder(new ObjectMapper(new CBORFactory())
+                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+                userType = state.userType;
+                reposType = state.reposType;
+                userResponse = Payloads.response(state.userCbor, "application/cbor");
+                reposResponse = Payloads.response(state.reposCbor, "application/cbor");
+                return;
+            case "protobuf":
+                decoder = new ProtobufDecoder();
+                userType = GithubProtos.User.class;
+                reposType = GithubProtos.RepoList.class;
+                userResponse = Payloads.response(state.userProtoBytes, "application/x-protobuf");
+                reposResponse = Payloads.response(state.reposProtoBytes,
+                    "application/x-protobuf");
+                return;
+            default:
+                throw new IllegalArgumentException(codec);
+        }
+        userResponse = Payloads.jsonResponse(state.userJson);
+        reposResponse = Payloads.jsonResponse(state.reposJson);
+    }
+
+    @Benchmark
+    public Object decodeUser() throws IOException {
+        return decoder.decode(userResponse, userType);
+    }
+
+    @Benchmark
+    public Object decodeRepos() throws IOException {
+        return decoder.decode(reposResponse, reposType);
+    }
+}
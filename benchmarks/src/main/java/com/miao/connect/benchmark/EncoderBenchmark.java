@@ -0,0 +1,94 @@
+package com.miao.connect.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.miao.connect.MyJacksonEncoder;
+import com.miao.connect.ProtobufEncoder;
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import feign.gson.GsonEncoder;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 请求体编码，jackson-pretty为打开INDENT_OUTPUT的格式化输出.
+ * smile、cbor编码同样的对象，protobuf编码内容相同的生成类.
+ *
+ * @author Ryan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncoderBenchmark {
+
+    @Param({"jackson", "jackson-pretty", "gson", "smile", "cbor", "protobuf"})
+    public String codec;
+
+    private Encoder encoder;
+    private Object user;
+    private Object repos;
+
+    /**
+     * 创建encoder.
+     */
+    @Setup
+    public void setUp(CodecState state) {
+        user = state.user;
+        repos = state.repos;
+        switch (codec) {
+            case "jackson":
+                encoder = new MyJacksonEncoder();
+                break;
+            case "jackson-pretty":
+                encoder = new MyJacksonEncoder(Collections.emptyList(), true);
+                break;
+            case "gson":
+                encoder = new GsonEncoder();
+                break;
+            case "smile":
+                encoder = new MyJacksonEncoder(new ObjectMapper(new SmileFactory()),
+                    "application/x-jackson-smile");
+                break;
+            case "cbor":
+                encoder = new MyJacksonEncoder(new ObjectMapper(new CBORFactory()),
+                    "application/cbor");
+                break;
+            case "protobuf":
+                encoder = new ProtobufEncoder();
+                user = state.userProto;
+                repos = state.reposProto;
+                break;
+            default:
+                throw new IllegalArgumentException(codec);
+        }
+    }
+
+    @Benchmark
+    public RequestTemplate encodeUser(CodecState state) {
+        RequestTemplate template = new RequestTemplate();
+        encoder.encode(user, state.userType, template);
+        return template;
+    }
+
+    @Benchmark
+    public RequestTemplate encodeRepos(CodecState state) {
+        RequestTemplate template = new RequestTemplate();
+        encoder.encode(repos, state.reposType, template);
+        return template;
+    }
+}
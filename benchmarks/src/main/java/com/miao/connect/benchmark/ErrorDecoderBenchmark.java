@@ -0,0 +1,77 @@
+package com.miao.connect.benchmark;
+
+import com.miao.connect.FeignErrorDecoder;
+import feign.Response;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 错误响应解码，下游返回bodyBytes大小的html错误页，最多读取默认的8KB. length为known时响应带Content-Length，
+ * chunked时长度未知，对应分块传输.
+ *
+ * @author Ryan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorDecoderBenchmark {
+
+    @Param({"known", "chunked"})
+    public String length;
+
+    @Param({"512", "65536"})
+    public int bodyBytes;
+
+    private final FeignErrorDecoder decoder = new FeignErrorDecoder();
+    private byte[] body;
+    private Map<String, Collection<String>> headers;
+
+    /**
+     * 创建错误页.
+     */
+    @Setup
+    public void setUp() {
+        StringBuilder html = new StringBuilder("<html><body><h1>502 Bad Gateway</h1>");
+        while (html.length() < bodyBytes - 16) {
+            html.append("<p>upstream error</p>");
+        }
+        html.setLength(bodyBytes - 14);
+        html.append("</body></html>");
+        body = html.toString().getBytes(StandardCharsets.UTF_8);
+        headers = new HashMap<>();
+        headers.put("Content-Type", Collections.singletonList("text/html;charset=UTF-8"));
+    }
+
+    @Benchmark
+    public Exception decode() {
+        Response.Builder response = Response.builder()
+            .status(502)
+            .reason("Bad Gateway")
+            .headers(headers);
+        if ("known".equals(length)) {
+            response.body(body);
+        } else {
+            response.body(new ByteArrayInputStream(body), null);
+        }
+        return decoder.decode("GithubConnector#getUser(String)", response.build());
+    }
+}
@@ -0,0 +1,54 @@
+package com.miao.connect.benchmark;
+
+import com.miao.connect.FeignFactory;
+import com.miao.connect.HystrixConfigurationProperties;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * 不启动spring容器，直接创建FeignFactory.
+ *
+ * @author Ryan
+ */
+public final class Factories {
+
+    private Factories() {
+    }
+
+    /**
+     * 为GithubConnector的default和getRepos配置好url和超时.
+     *
+     * @param url 桩的地址
+     * @param extra 额外的配置，可以覆盖默认值
+     */
+    public static FeignFactory feignFactory(String url, Map<String, Object> extra) {
+        Map<String, Object> properties = new HashMap<>();
+        for (String method : new String[]{"default", "getRepos"}) {
+            String prefix = "feign.endpointConfig.GithubConnector." + method + ".";
+            properties.put(prefix + "url", url);
+            properties.put(prefix + "readTimeoutMillis", "5000");
+            properties.put(prefix + "connectTimeoutMillis", "1000");
+        }
+        properties.putAll(extra);
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+
+        Map<String, Object> hystrixConfig = new HashMap<>();
+        hystrixConfig.put("hystrix.command.default.execution.isolation.thread.timeoutInMilliseconds",
+            10000);
+        hystrixConfig.put("hystrix.threadpool.default.coreSize", 32);
+        HystrixConfigurationProperties hystrixConfigurationProperties =
+            new HystrixConfigurationProperties();
+        hystrixConfigurationProperties.setHystrixConfig(hystrixConfig);
+
+        FeignFactory feignFactory = new FeignFactory(environment, hystrixConfigurationProperties);
+        feignFactory.initHystrixConfiguration();
+        return feignFactory;
+    }
+
+    public static FeignFactory feignFactory(String url) {
+        return feignFactory(url, new HashMap<>());
+    }
+}
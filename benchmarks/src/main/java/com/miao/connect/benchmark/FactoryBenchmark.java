@@ -0,0 +1,59 @@
+package com.miao.connect.benchmark;
+
+import com.miao.connect.FeignFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FeignFactory.Builder.getConnector在缓存命中时的开销，业务代码每次请求都会调用.
+ *
+ * @author Ryan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FactoryBenchmark {
+
+    private FeignFactory feignFactory;
+
+    /**
+     * 创建factory并预先生成connector.
+     */
+    @Setup
+    public void setUp() {
+        feignFactory = Factories.feignFactory("http://127.0.0.1:1");
+        defaultConnector();
+        methodConnector();
+    }
+
+    @TearDown
+    public void tearDown() {
+        feignFactory.destroy();
+    }
+
+    @Benchmark
+    public GithubConnector defaultConnector() {
+        return feignFactory.builder().getConnector(GithubConnector.class);
+    }
+
+    @Benchmark
+    public GithubConnector methodConnector() {
+        return feignFactory.builder()
+            .connectorMethod("getRepos")
+            .stringDecoder()
+            .getConnector(GithubConnector.class);
+    }
+}
@@ -0,0 +1,27 @@
+package com.miao.connect.benchmark;
+
+import com.miao.connect.Connector;
+import feign.Headers;
+import feign.Param;
+import feign.RequestLine;
+import java.util.List;
+
+/**
+ * 压测用的Connector.
+ *
+ * @author Ryan
+ */
+public interface GithubConnector extends Connector {
+
+    @RequestLine("GET /users/{username}")
+    @Headers({"Content-Type: application/json"})
+    GithubUser getGithubUser(@Param("username") String username);
+
+    @RequestLine("GET /users/{username}/repos")
+    @Headers({"Content-Type: application/json"})
+    List<GithubRepo> getRepos(@Param("username") String username);
+
+    @RequestLine("GET /users/{username}/repos")
+    @Headers({"Content-Type: application/json"})
+    String getReposAsString(@Param("username") String username);
+}
@@ -0,0 +1,151 @@
+package com.miao.connect.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * GET /users/{username}/repos返回的数组元素.
+ *
+ * @author Ryan
+ */
+@Data
+public class GithubRepo {
+
+    @JsonProperty("id")
+    @SerializedName("id")
+    private Long id;
+    @JsonProperty("node_id")
+    @SerializedName("node_id")
+    private String nodeId;
+    @JsonProperty("name")
+    @SerializedName("name")
+    private String name;
+    @JsonProperty("full_name")
+    @SerializedName("full_name")
+    private String fullName;
+    @JsonProperty("private")
+    @SerializedName("private")
+    private Boolean isPrivate;
+    @JsonProperty("owner")
+    @SerializedName("owner")
+    private GithubUser owner;
+    @JsonProperty("html_url")
+    @SerializedName("html_url")
+    private String htmlUrl;
+    @JsonProperty("description")
+    @SerializedName("description")
+    private String description;
+    @JsonProperty("fork")
+    @SerializedName("fork")
+    private Boolean fork;
+    @JsonProperty("url")
+    @SerializedName("url")
+    private String url;
+    @JsonProperty("forks_url")
+    @SerializedName("forks_url")
+    private String forksUrl;
+    @JsonProperty("keys_url")
+    @SerializedName("keys_url")
+    private String keysUrl;
+    @JsonProperty("collaborators_url")
+    @SerializedName("collaborators_url")
+    private String collaboratorsUrl;
+    @JsonProperty("teams_url")
+    @SerializedName("teams_url")
+    private String teamsUrl;
+    @JsonProperty("hooks_url")
+    @SerializedName("hooks_url")
+    private String hooksUrl;
+    @JsonProperty("issue_events_url")
+    @SerializedName("issue_events_url")
+    private String issueEventsUrl;
+    @JsonProperty("events_url")
+    @SerializedName("events_url")
+    private String eventsUrl;
+    @JsonProperty("branches_url")
+    @SerializedName("branches_url")
+    private String branchesUrl;
+    @JsonProperty("tags_url")
+    @SerializedName("tags_url")
+    private String tagsUrl;
+    @JsonProperty("languages_url")
+    @SerializedName("languages_url")
+    private String languagesUrl;
+    @JsonProperty("contributors_url")
+    @SerializedName("contributors_url")
+    private String contributorsUrl;
+    @JsonProperty("commits_url")
+    @SerializedName("commits_url")
+    private String commitsUrl;
+    @JsonProperty("git_url")
+    @SerializedName("git_url")
+    private String gitUrl;
+    @JsonProperty("ssh_url")
+    @SerializedName("ssh_url")
+    private String sshUrl;
+    @JsonProperty("clone_url")
+    @SerializedName("clone_url")
+    private String cloneUrl;
+    @JsonProperty("homepage")
+    @SerializedName("homepage")
+    private String homepage;
+    @JsonProperty("size")
+    @SerializedName("size")
+    private Integer size;
+    @JsonProperty("stargazers_count")
+    @SerializedName("stargazers_count")
+    private Integer stargazersCount;
+    @JsonProperty("watchers_count")
+    @SerializedName("watchers_count")
+    private Integer watchersCount;
+    @JsonProperty("language")
+    @SerializedName("language")
+    private String language;
+    @JsonProperty("has_issues")
+    @SerializedName("has_issues")
+    private Boolean hasIssues;
+    @JsonProperty("has_projects")
+    @SerializedName("has_projects")
+    private Boolean hasProjects;
+    @JsonProperty("has_downloads")
+    @SerializedName("has_downloads")
+    private Boolean hasDownloads;
+    @JsonProperty("has_wiki")
+    @SerializedName("has_wiki")
+    private Boolean hasWiki;
+    @JsonProperty("has_pages")
+    @SerializedName("has_pages")
+    private Boolean hasPages;
+    @JsonProperty("forks_count")
+    @SerializedName("forks_count")
+    private Integer forksCount;
+    @JsonProperty("archived")
+    @SerializedName("archived")
+    private Boolean archived;
+    @JsonProperty("open_issues_count")
+    @SerializedName("open_issues_count")
+    private Integer openIssuesCount;
+    @JsonProperty("forks")
+    @SerializedName("forks")
+    private Integer forks;
+    @JsonProperty("open_issues")
+    @SerializedName("open_issues")
+    private Integer openIssues;
+    @JsonProperty("watchers")
+    @SerializedName("watchers")
+    private Integer watchers;
+    @JsonProperty("default_branch")
+    @SerializedName("default_branch")
+    private String defaultBranch;
+    @JsonProperty("created_at")
+    @SerializedName("created_at")
+    private String createdAt;
+    @JsonProperty("updated_at")
+    @SerializedName("updated_at")
+    private String updatedAt;
+    @JsonProperty("pushed_at")
+    @SerializedName("pushed_at")
+    private String pushedAt;
+
+}
@@ -0,0 +1,109 @@
+package com.miao.connect.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * 和example里的GithubUser相同的结构，同时标注了Gson的字段名，保证各codec解析的字段一致.
+ *
+ * @author Ryan
+ */
+@Data
+public class GithubUser {
+
+    @JsonProperty("login")
+    @SerializedName("login")
+    private String login;
+    @JsonProperty("id")
+    @SerializedName("id")
+    private Integer id;
+    @JsonProperty("node_id")
+    @SerializedName("node_id")
+    private String nodeId;
+    @JsonProperty("avatar_url")
+    @SerializedName("avatar_url")
+    private String avatarUrl;
+    @JsonProperty("gravatar_id")
+    @SerializedName("gravatar_id")
+    private String gravatarId;
+    @JsonProperty("url")
+    @SerializedName("url")
+    private String url;
+    @JsonProperty("html_url")
+    @SerializedName("html_url")
+    private String htmlUrl;
+    @JsonProperty("followers_url")
+    @SerializedName("followers_url")
+    private String followersUrl;
+    @JsonProperty("following_url")
+    @SerializedName("following_url")
+    private String followingUrl;
+    @JsonProperty("gists_url")
+    @SerializedName("gists_url")
+    private String gistsUrl;
+    @JsonProperty("starred_url")
+    @SerializedName("starred_url")
+    private String starredUrl;
+    @JsonProperty("subscriptions_url")
+    @SerializedName("subscriptions_url")
+    private String subscriptionsUrl;
+    @JsonProperty("organizations_url")
+    @SerializedName("organizations_url")
+    private String organizationsUrl;
+    @JsonProperty("repos_url")
+    @SerializedName("repos_url")
+    private String reposUrl;
+    @JsonProperty("events_url")
+    @SerializedName("events_url")
+    private String eventsUrl;
+    @JsonProperty("received_events_url")
+    @SerializedName("received_events_url")
+    private String receivedEventsUrl;
+    @JsonProperty("type")
+    @SerializedName("type")
+    private String type;
+    @JsonProperty("site_admin")
+    @SerializedName("site_admin")
+    private Boolean siteAdmin;
+    @JsonProperty("name")
+    @SerializedName("name")
+    private String name;
+    @JsonProperty("company")
+    @SerializedName("company")
+    private String company;
+    @JsonProperty("blog")
+    @SerializedName("blog")
+    private String blog;
+    @JsonProperty("location")
+    @SerializedName("location")
+    private String location;
+    @JsonProperty("email")
+    @SerializedName("email")
+    private String email;
+    @JsonProperty("hireable")
+    @SerializedName("hireable")
+    private Boolean hireable;
+    @JsonProperty("bio")
+    @SerializedName("bio")
+    private String bio;
+    @JsonProperty("public_repos")
+    @SerializedName("public_repos")
+    private Integer publicRepos;
+    @JsonProperty("public_gists")
+    @SerializedName("public_gists")
+    private Integer publicGists;
+    @JsonProperty("followers")
+    @SerializedName("followers")
+    private Integer followers;
+    @JsonProperty("following")
+    @SerializedName("following")
+    private Integer following;
+    @JsonProperty("created_at")
+    @SerializedName("created_at")
+    private String createdAt;
+    @JsonProperty("updated_at")
+    @SerializedName("updated_at")
+    private String updatedAt;
+
+}
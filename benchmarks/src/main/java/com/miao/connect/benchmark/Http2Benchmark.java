@@ -0,0 +1,83 @@
+package com.miao.connect.benchmark;
+
+import com.miao.connect.FeignFactory;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 多个线程并发调用同一个节点时，HTTP/1.1连接池和h2c多路复用的延迟和连接数.
+ * 使用resilience: lightweight，避免hystrix线程池在高并发下拒绝请求，只比较client的差异.
+ * 结束时打印桩接受过的连接数、仍然打开的连接数和连接池状态.
+ *
+ * @author Ryan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class Http2Benchmark {
+
+    @Param({"pooled", "h2c"})
+    public String client;
+
+    /**
+     * 桩的处理时间，毫秒.
+     */
+    @Param({"0", "5"})
+    public long delayMillis;
+
+    private Http2Stub stub;
+    private FeignFactory feignFactory;
+    private GithubConnector connector;
+
+    /**
+     * 启动桩并创建connector.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        stub = new Http2Stub("h2c".equals(client), Payloads.json(Payloads.user("Ryan-Miao")),
+            delayMillis);
+        Map<String, Object> properties = new HashMap<>();
+        String prefix = "feign.endpointConfig.GithubConnector.default.";
+        properties.put(prefix + "client", client);
+        properties.put(prefix + "resilience", "lightweight");
+        properties.put(prefix + "maxConcurrentCalls", 64);
+        feignFactory = Factories.feignFactory(stub.url(), properties);
+        connector = feignFactory.builder().getConnector(GithubConnector.class);
+    }
+
+    /**
+     * 打印连接数，关闭桩和连接池.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.println("client: " + client + ", accepted connections: " + stub.connections()
+            + ", open connections: " + stub.openConnections()
+            + ", pool: " + feignFactory.getPoolStats());
+        feignFactory.destroy();
+        stub.close();
+    }
+
+    @Benchmark
+    public GithubUser getGithubUser() {
+        return connector.getGithubUser("Ryan-Miao");
+    }
+}
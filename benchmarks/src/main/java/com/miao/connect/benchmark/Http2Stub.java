@@ -0,0 +1,127 @@
+package com.miao.connect.benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ServerSocketFactory;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * 基于OkHttp MockWebServer的桩，可以用HTTP/1.1或h2c(prior knowledge)响应，记录建立过的和仍然打开的连接数.
+ *
+ * @author Ryan
+ */
+public class Http2Stub implements AutoCloseable {
+
+    private final MockWebServer server = new MockWebServer();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    /**
+     * 启动在随机端口.
+     *
+     * @param h2c true时只接受h2c，否则为HTTP/1.1
+     * @param body 固定返回的json
+     * @param delayMillis 每个响应的处理时间，模拟下游的耗时
+     */
+    public Http2Stub(boolean h2c, byte[] body, long delayMillis) throws IOException {
+        //每个请求都会打印INFO日志
+        Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.WARNING);
+        server.setServerSocketFactory(new CountingServerSocketFactory());
+        if (h2c) {
+            server.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        }
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                    .setHeader("Content-Type", "application/json;charset=UTF-8")
+                    .setBody(new Buffer().write(body))
+                    .setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start(InetAddress.getByName("127.0.0.1"), 0);
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getPort();
+    }
+
+    /**
+     * 启动以来接受的连接数. h2c在并发的第一批请求时会同时建立多个连接，client随后只保留一个.
+     */
+    public int connections() {
+        return connections.get();
+    }
+
+    /**
+     * 当前没有关闭的连接数.
+     */
+    public int openConnections() {
+        return openConnections.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private class CountingServerSocketFactory extends ServerSocketFactory {
+
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = new CountingSocket();
+                    implAccept(socket);
+                    //MockWebServer分开写响应头和响应体，开着Nagle时HTTP/1.1每次都要等40ms的delayed ACK
+                    socket.setTcpNoDelay(true);
+                    connections.incrementAndGet();
+                    openConnections.incrementAndGet();
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class CountingSocket extends Socket {
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                openConnections.decrementAndGet();
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.miao.connect.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 本地的github api桩，基于jdk自带的HttpServer，返回固定的json.
+ *
+ * @author Ryan
+ */
+public class HttpStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] user;
+    private final byte[] repos;
+
+    /**
+     * 启动在随机端口.
+     */
+    public HttpStub(byte[] user, byte[] repos) throws IOException {
+        this.user = user;
+        this.repos = repos;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        this.executor = Executors.newFixedThreadPool(8, r -> {
+            Thread thread = new Thread(r, "http-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/users/", this::handle);
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            while (in.read() != -1) {
+                //drain request body
+            }
+        }
+        byte[] body = exchange.getRequestURI().getPath().endsWith("/repos") ? repos : user;
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
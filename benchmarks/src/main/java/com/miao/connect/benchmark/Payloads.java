@@ -0,0 +1,217 @@
+package com.miao.connect.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import feign.Response;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测用的数据，结构和github api返回一致.
+ *
+ * @author Ryan
+ */
+public final class Payloads {
+
+    /**
+     * 一个活跃用户的仓库数量级，序列化后大约几百KB.
+     */
+    public static final int DEFAULT_REPO_COUNT = 300;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+    private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+
+    private Payloads() {
+    }
+
+    /**
+     * 创建用户.
+     */
+    public static GithubUser user(String login) {
+        String api = "https://api.github.com/users/" + login;
+        GithubUser user = new GithubUser();
+        user.setLogin(login);
+        user.setId(Math.abs(login.hashCode()));
+        user.setNodeId("MDQ6VXNlcjE2MjIwOTY3");
+        user.setAvatarUrl("https://avatars2.githubusercontent.com/u/16220967?v=4");
+        user.setGravatarId("");
+        user.setUrl(api);
+        user.setHtmlUrl("https://github.com/" + login);
+        user.setFollowersUrl(api + "/followers");
+        user.setFollowingUrl(api + "/following{/other_user}");
+        user.setGistsUrl(api + "/gists{/gist_id}");
+        user.setStarredUrl(api + "/starred{/owner}{/repo}");
+        user.setSubscriptionsUrl(api + "/subscriptions");
+        user.setOrganizationsUrl(api + "/orgs");
+        user.setReposUrl(api + "/repos");
+        user.setEventsUrl(api + "/events{/privacy}");
+        user.setReceivedEventsUrl(api + "/received_events");
+        user.setType("User");
+        user.setSiteAdmin(false);
+        user.setName("Ryan Miao");
+        user.setCompany("@hotels-tech");
+        user.setBlog("https://www.cnblogs.com/woshimrf/");
+        user.setLocation("Shanghai, China");
+        user.setHireable(true);
+        user.setBio("Java developer, interested in distributed systems and performance.");
+        user.setPublicRepos(DEFAULT_REPO_COUNT);
+        user.setPublicGists(12);
+        user.setFollowers(321);
+        user.setFollowing(42);
+        user.setCreatedAt("2015-12-09T10:03:47Z");
+        user.setUpdatedAt("2018-07-01T08:21:15Z");
+        return user;
+    }
+
+    /**
+     * 创建仓库列表.
+     */
+    public static List<GithubRepo> repos(String login, int count) {
+        GithubUser owner = user(login);
+        List<GithubRepo> repos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = "project-" + i;
+            String api = "https://api.github.com/repos/" + login + "/" + name;
+            GithubRepo repo = new GithubRepo();
+            repo.setId(100000000L + i);
+            repo.setNodeId("MDEwOlJlcG9zaXRvcnk" + i);
+            repo.setName(name);
+            repo.setFullName(login + "/" + name);
+            repo.setIsPrivate(false);
+            repo.setOwner(owner);
+            repo.setHtmlUrl("https://github.com/" + login + "/" + name);
+            repo.setDescription("Sample repository number " + i
+                + " used to benchmark decoding of large repo listings.");
+            repo.setFork(i % 3 == 0);
+            repo.setUrl(api);
+            repo.setForksUrl(api + "/forks");
+            repo.setKeysUrl(api + "/keys{/key_id}");
+            repo.setCollaboratorsUrl(api + "/collaborators{/collaborator}");
+            repo.setTeamsUrl(api + "/teams");
+            repo.setHooksUrl(api + "/hooks");
+            repo.setIssueEventsUrl(api + "/issues/events{/number}");
+            repo.setEventsUrl(api + "/events");
+            repo.setBranchesUrl(api + "/branches{/branch}");
+            repo.setTagsUrl(api + "/tags");
+            repo.setLanguagesUrl(api + "/languages");
+            repo.setContributorsUrl(api + "/contributors");
+            repo.setCommitsUrl(api + "/commits{/sha}");
+            repo.setGitUrl("git://github.com/" + login + "/" + name + ".git");
+            repo.setSshUrl("git@github.com:" + login + "/" + name + ".git");
+            repo.setCloneUrl("https://github.com/" + login + "/" + name + ".git");
+            repo.setHomepage(i % 5 == 0 ? "https://" + login + ".github.io/" + name : null);
+            repo.setSize(1024 + i * 7);
+            repo.setStargazersCount(i * 3);
+            repo.setWatchersCount(i * 3);
+            repo.setLanguage(i % 2 == 0 ? "Java" : "JavaScript");
+            repo.setHasIssues(true);
+            repo.setHasProjects(true);
+            repo.setHasDownloads(true);
+            repo.setHasWiki(i % 4 == 0);
+            repo.setHasPages(false);
+            repo.setForksCount(i % 17);
+            repo.setArchived(false);
+            repo.setOpenIssuesCount(i % 7);
+            repo.setForks(i % 17);
+            repo.setOpenIssues(i % 7);
+            repo.setWatchers(i * 3);
+            repo.setDefaultBranch("master");
+            repo.setCreatedAt("2016-03-12T09:28:11Z");
+            repo.setUpdatedAt("2018-06-28T12:00:00Z");
+            repo.setPushedAt("2018-06-30T17:45:03Z");
+            repos.add(repo);
+        }
+        return repos;
+    }
+
+    /**
+     * 序列化成json bytes.
+     */
+    public static byte[] json(Object value) {
+        try {
+            return MAPPER.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 序列化成smile bytes.
+     */
+    public static byte[] smile(Object value) {
+        try {
+            return SMILE_MAPPER.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 序列化成cbor bytes.
+     */
+    public static byte[] cbor(Object value) {
+        try {
+            return CBOR_MAPPER.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 把json转换成字段相同的protobuf消息，json的数组放到builder唯一的repeated字段里.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Message> T proto(byte[] json, Message.Builder builder) {
+        String text = new String(json, StandardCharsets.UTF_8);
+        if (text.startsWith("[")) {
+            text = "{\"" + builder.getDescriptorForType().getFields().get(0).getName() + "\":"
+                + text + "}";
+        }
+        try {
+            JsonFormat.parser().ignoringUnknownFields().merge(text, builder);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        return (T) builder.build();
+    }
+
+    /**
+     * 构造一个可重复读取body的feign Response.
+     */
+    public static Response jsonResponse(byte[] body) {
+        return response(body, "application/json;charset=UTF-8");
+    }
+
+    /**
+     * 构造一个可重复读取body的feign Response.
+     */
+    public static Response response(byte[] body, String contentType) {
+        Map<String, Collection<String>> headers = new HashMap<>();
+        headers.put("Content-Type", Collections.singletonList(contentType));
+        headers.put("Content-Length", Collections.singletonList(String.valueOf(body.length)));
+        return Response.builder()
+            .status(200)
+            .reason("OK")
+            .headers(headers)
+            .body(body)
+            .build();
+    }
+
+    /**
+     * 构造一个可重复读取body的feign Response.
+     */
+    public static Response jsonResponse(String body) {
+        return jsonResponse(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
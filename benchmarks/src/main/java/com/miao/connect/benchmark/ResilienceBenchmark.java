@@ -0,0 +1,67 @@
+package com.miao.connect.benchmark;
+
+import com.miao.connect.FeignFactory;
+import feign.Client;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * hystrix线程隔离和resilience: lightweight每次调用的额外开销.
+ * client直接返回内存中的响应，不走网络，差异主要来自隔离方式.
+ *
+ * @author Ryan
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResilienceBenchmark {
+
+    @Param({"hystrix", "lightweight"})
+    public String resilience;
+
+    private FeignFactory feignFactory;
+    private GithubConnector connector;
+
+    /**
+     * 创建connector，client返回固定的响应.
+     */
+    @Setup
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("feign.endpointConfig.GithubConnector.default.resilience", resilience);
+        feignFactory = Factories.feignFactory("http://127.0.0.1:1", properties);
+        byte[] user = Payloads.json(Payloads.user("Ryan-Miao"));
+        Client client = (request, options) -> Payloads.jsonResponse(user).toBuilder()
+            .request(request)
+            .build();
+        connector = feignFactory.builder()
+            .client(client)
+            .getConnector(GithubConnector.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        feignFactory.destroy();
+    }
+
+    @Benchmark
+    public GithubUser getGithubUser() {
+        return connector.getGithubUser("Ryan-Miao");
+    }
+}
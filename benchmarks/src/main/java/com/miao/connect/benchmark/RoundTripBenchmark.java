@@ -0,0 +1,84 @@
+package com.miao.connect.benchmark;
+
+import com.miao.connect.FeignFactory;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 经过hystrix、client、codec的完整请求，对端是本地的HttpStub.
+ *
+ * @author Ryan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    @Param({"pooled", "default"})
+    public String client;
+
+    private HttpStub stub;
+    private FeignFactory feignFactory;
+    private GithubConnector connector;
+    private GithubConnector stringConnector;
+
+    /**
+     * 启动桩并创建connector.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        stub = new HttpStub(Payloads.json(Payloads.user("Ryan-Miao")),
+            Payloads.json(Payloads.repos("Ryan-Miao", Payloads.DEFAULT_REPO_COUNT)));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("feign.endpointConfig.GithubConnector.default.client", client);
+        properties.put("feign.endpointConfig.GithubConnector.getRepos.client", client);
+        feignFactory = Factories.feignFactory(stub.url(), properties);
+        connector = feignFactory.builder().getConnector(GithubConnector.class);
+        stringConnector = feignFactory.builder()
+            .connectorMethod("getRepos")
+            .stringDecoder()
+            .getConnector(GithubConnector.class);
+    }
+
+    /**
+     * 关闭桩和连接池.
+     */
+    @TearDown
+    public void tearDown() {
+        feignFactory.destroy();
+        stub.close();
+    }
+
+    @Benchmark
+    public GithubUser getGithubUser() {
+        return connector.getGithubUser("Ryan-Miao");
+    }
+
+    @Benchmark
+    public List<GithubRepo> getRepos() {
+        return connector.getRepos("Ryan-Miao");
+    }
+
+    @Benchmark
+    public String getReposAsString() {
+        return stringConnector.getReposAsString("Ryan-Miao");
+    }
+}
@@ -0,0 +1,144 @@
+package com.miao.connect;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按TCP Vegas的思路根据响应时间调整并发上限：用观察到的最小RTT作为无负载RTT，
+ * 估算排队的请求数 limit * (1 - rttNoLoad / rtt)，排队少时增大上限，排队多时减小上限，
+ * 超时或被拒绝时直接减小. 并发达到上限的调用立即拒绝，不再排队.
+ * 占用和释放并发在调用线程上，响应时间由命令内部的{@link ConcurrencySamplingClient}和AsyncHttpExecutor记录.
+ *
+ * @author Ryan
+ */
+class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 每隔这么多个样本重新测量无负载RTT，适应下游本身变慢或变快.
+     */
+    private static final int PROBE_INTERVAL = 1000;
+
+    private final ConcurrencyLimitProperties properties;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private long rttNoLoad;
+    private int samples;
+
+    AdaptiveConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+        if (properties.getMinConcurrencyLimit() < 1
+            || properties.getMaxConcurrencyLimit() < properties.getMinConcurrencyLimit()) {
+            throw new FeignConfigurationException(
+                "并发限制配置错误：" + properties.getMinConcurrencyLimit() + " - "
+                    + properties.getMaxConcurrencyLimit());
+        }
+        this.properties = properties;
+        this.minLimit = properties.getMinConcurrencyLimit();
+        this.maxLimit = properties.getMaxConcurrencyLimit();
+        this.limit = Math.max(minLimit,
+            Math.min(maxLimit, properties.getInitialConcurrencyLimit()));
+    }
+
+    /**
+     * 占用一个并发，已经达到上限时返回false.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放一个并发，不更新上限.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 记录一次到达下游的请求，在hystrix命令内部调用，fallback的结果不算. 429和503按被下游拒绝处理.
+     *
+     * @param rttNanos 发出请求到收到响应的耗时
+     */
+    void onResponse(long rttNanos, int status) {
+        update(rttNanos, status == 429 || status == 503, inFlight.get());
+    }
+
+    /**
+     * 请求失败时调用，超时按过载减小上限，其它异常说明不了下游的负载，不更新.
+     */
+    void onError(Throwable e) {
+        if (isTimeout(e)) {
+            onDropped();
+        }
+    }
+
+    /**
+     * 记录一次超时或被拒绝.
+     */
+    void onDropped() {
+        update(0, true, inFlight.get());
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FeignTimeoutException || cause instanceof SocketTimeoutException
+                || cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void update(long rtt, boolean dropped, int inFlight) {
+        double limit = this.limit;
+        double step = Math.max(1, Math.log10(limit));
+        double newLimit;
+        if (dropped) {
+            newLimit = limit - step;
+        } else {
+            if (rttNoLoad == 0 || rtt < rttNoLoad || ++samples >= PROBE_INTERVAL) {
+                rttNoLoad = rtt;
+                samples = 0;
+            }
+            if (inFlight * 2 < limit) {
+                //并发远没用满时RTT说明不了上限是否合适
+                return;
+            }
+            double queueSize = Math.ceil(limit * (1 - (double) rttNoLoad / rtt));
+            if (queueSize <= step) {
+                newLimit = limit + 6 * step;
+            } else if (queueSize < 3 * step) {
+                newLimit = limit + step;
+            } else if (queueSize > 6 * step) {
+                newLimit = limit - step;
+            } else {
+                return;
+            }
+        }
+        this.limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    ConcurrencyLimitProperties properties() {
+        return properties;
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,212 @@
+package com.miao.connect;
+
+import com.miao.connect.LoadBalancer.Server;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import feign.Util;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Future;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import rx.Observable;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * 用HttpAsyncClient执行feign的Request，响应在IO线程上回调，取消订阅时取消请求.
+ *
+ * @author Ryan
+ */
+class AsyncHttpExecutor {
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final ConnectorMeters meters;
+    private final String targetUrl;
+    private final LiveEndpoint endpoint;
+    private final HttpCompression compression;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    /**
+     * 构造器.
+     *
+     * @param endpoint 用来选择url，builder指定了url时为null
+     * @param compression 没有开启compression时为null
+     * @param limiter 记录响应时间，没有开启adaptiveConcurrency时为null
+     */
+    AsyncHttpExecutor(CloseableHttpAsyncClient httpClient, ConnectorMeters meters,
+        String targetUrl, LiveEndpoint endpoint, HttpCompression compression,
+        AdaptiveConcurrencyLimiter limiter) {
+        this.httpClient = httpClient;
+        this.meters = meters;
+        this.targetUrl = targetUrl;
+        this.endpoint = endpoint;
+        this.compression = compression;
+        this.limiter = limiter;
+    }
+
+    /**
+     * 订阅时才发出请求，响应体已经完整读入内存.
+     */
+    Observable<Response> execute(Request original, Options options) {
+        return Observable.create(subscriber -> {
+            Request request;
+            try {
+                request = compression == null ? original : compression.compress(original);
+            } catch (IOException e) {
+                subscriber.onError(e);
+                return;
+            }
+            LoadBalancer loadBalancer = endpoint == null ? null : endpoint.loadBalancer();
+            Server server = loadBalancer == null ? null : loadBalancer.choose();
+            Request routed = request;
+            if (server != null) {
+                routed = LoadBalancingClient.route(request, targetUrl, server.url);
+            } else if (endpoint != null) {
+                routed = LoadBalancingClient.route(request, targetUrl,
+                    endpoint.config().getUrl());
+            }
+            HttpUriRequest httpRequest = toHttpRequest(routed, options);
+            if (request.body() != null) {
+                meters.requestBytes.record(request.body().length);
+            }
+            meters.inFlight.increment();
+            if (server != null) {
+                server.outstanding.incrementAndGet();
+            }
+            long start = System.nanoTime();
+            Future<HttpResponse> future = httpClient.execute(httpRequest,
+                new FutureCallback<HttpResponse>() {
+                    @Override
+                    public void completed(HttpResponse httpResponse) {
+                        meters.inFlight.decrement();
+                        long elapsed = System.nanoTime() - start;
+                        meters.exchange.record(elapsed);
+                        int status = httpResponse.getStatusLine().getStatusCode();
+                        release(status >= 500, elapsed);
+                        if (limiter != null) {
+                            limiter.onResponse(elapsed, status);
+                        }
+                        Response response;
+                        try {
+                            response = toResponse(httpResponse, request);
+                        } catch (IOException e) {
+                            meters.ioErrors.increment();
+                            subscriber.onError(e);
+                            return;
+                        }
+                        meters.response(response.status()).increment();
+                        meters.responseBytes.record(
+                            response.body() == null ? 0 : response.body().length());
+                        if (compression != null) {
+                            response = compression.decompress(response);
+                        }
+                        subscriber.onNext(response);
+                        subscriber.onCompleted();
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        meters.inFlight.decrement();
+                        long elapsed = System.nanoTime() - start;
+                        meters.exchange.record(elapsed);
+                        release(true, elapsed);
+                        if (limiter != null) {
+                            limiter.onError(e);
+                        }
+                        meters.ioErrors.increment();
+                        subscriber.onError(e);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        meters.inFlight.decrement();
+                        //取消一般是hystrix超时，按失败处理，同时结束试探
+                        release(true, System.nanoTime() - start);
+                    }
+
+                    private void release(boolean failed, long elapsed) {
+                        if (server != null) {
+                            server.outstanding.decrementAndGet();
+                            loadBalancer.record(server, elapsed, failed);
+                        }
+                    }
+                });
+            subscriber.add(Subscriptions.create(() -> future.cancel(true)));
+        });
+    }
+
+    private static HttpUriRequest toHttpRequest(Request request, Options options) {
+        RequestBuilder builder = RequestBuilder.create(request.method())
+            .setUri(request.url())
+            .setConfig(RequestConfig.custom()
+                .setConnectTimeout(options.connectTimeoutMillis())
+                .setConnectionRequestTimeout(options.connectTimeoutMillis())
+                .setSocketTimeout(options.readTimeoutMillis())
+                .setRedirectsEnabled(options.isFollowRedirects())
+                .build());
+        ContentType contentType = null;
+        for (Entry<String, Collection<String>> header : request.headers().entrySet()) {
+            String name = header.getKey();
+            if (Util.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                if ("Content-Type".equalsIgnoreCase(name) && contentType == null) {
+                    contentType = ContentType.parse(value);
+                }
+                builder.addHeader(name, value);
+            }
+        }
+        if (request.body() != null) {
+            builder.setEntity(new ByteArrayEntity(request.body(), contentType));
+        }
+        return builder.build();
+    }
+
+    private static Response toResponse(HttpResponse httpResponse, Request request)
+        throws IOException {
+        Map<String, Collection<String>> headers = new LinkedHashMap<>();
+        for (Header header : httpResponse.getAllHeaders()) {
+            headers.computeIfAbsent(header.getName(), k -> new ArrayList<>())
+                .add(header.getValue());
+        }
+        HttpEntity entity = httpResponse.getEntity();
+        return Response.builder()
+            .status(httpResponse.getStatusLine().getStatusCode())
+            .reason(httpResponse.getStatusLine().getReasonPhrase())
+            .headers(headers)
+            .body(entity == null ? null : toByteArray(entity))
+            .request(request)
+            .build();
+    }
+
+    /**
+     * 响应已经由HttpAsyncClient读入内存，知道长度时直接读到结果数组，
+     * 不像EntityUtils.toByteArray那样先读到扩容的缓冲区再拷贝一次.
+     */
+    private static byte[] toByteArray(HttpEntity entity) throws IOException {
+        InputStream in = entity.getContent();
+        if (in == null) {
+            return null;
+        }
+        try {
+            return PooledOutputStream.readFully(in, entity.getContentLength());
+        } finally {
+            in.close();
+        }
+    }
+}
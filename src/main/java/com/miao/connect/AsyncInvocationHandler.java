@@ -0,0 +1,251 @@
+package com.miao.connect;
+
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
+import com.netflix.hystrix.HystrixObservableCommand;
+import feign.Feign;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import feign.codec.ErrorDecoder;
+import feign.hystrix.FallbackFactory;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.exceptions.Exceptions;
+import rx.schedulers.Schedulers;
+
+/**
+ * 返回CompletableFuture的Connector方法走非阻塞的HttpAsyncClient.
+ * 每次调用包装成信号量隔离的HystrixObservableCommand，超时、熔断和fallback和同步方法一样生效，
+ * 但等待响应时不占用hystrix线程. 响应从IO线程切换到单独的线程池解码并完成future，
+ * 调用方的回调不会占用IO线程. 其余方法直接交给原来的HystrixFeign connector.
+ *
+ * @author Ryan
+ */
+class AsyncInvocationHandler implements InvocationHandler {
+
+    private final Object target;
+    private final FallbackFactory<?> fallback;
+    private final Map<Method, AsyncMethod> asyncMethods;
+    private final RequestCapture capture;
+    private final AsyncHttpExecutor executor;
+    private final Supplier<Options> options;
+    private final Decoder decoder;
+    private final ErrorDecoder errorDecoder;
+    private final Scheduler decodeScheduler;
+
+    private AsyncInvocationHandler(Object target, FallbackFactory<?> fallback,
+        Map<Method, AsyncMethod> asyncMethods, RequestCapture capture,
+        AsyncHttpExecutor executor, Supplier<Options> options, Decoder decoder,
+        ErrorDecoder errorDecoder, Scheduler decodeScheduler) {
+        this.target = target;
+        this.fallback = fallback;
+        this.asyncMethods = asyncMethods;
+        this.capture = capture;
+        this.executor = executor;
+        this.options = options;
+        this.decoder = decoder;
+        this.errorDecoder = errorDecoder;
+        this.decodeScheduler = decodeScheduler;
+    }
+
+    /**
+     * connectorClass中是否有返回CompletableFuture的方法.
+     */
+    static boolean hasAsyncMethods(Class<?> connectorClass) {
+        for (Method method : connectorClass.getMethods()) {
+            if (isAsync(method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAsync(Method method) {
+        return method.getReturnType() == CompletableFuture.class && !method.isDefault();
+    }
+
+    /**
+     * 给connector套上处理CompletableFuture方法的代理.
+     *
+     * @param fallback 按hystrix的执行异常创建fallback，没有时为null
+     * @param options 每次请求时获取，配置刷新后使用新的超时
+     * @param decodeExecutor 解码响应和完成future的线程池
+     * @param groupKey hystrix的group key，和HystrixFeign一样使用url
+     * @param maxConcurrentRequests 每个方法的信号量大小，可以被hystrix配置覆盖
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T wrap(Class<T> connectorClass, T target, FallbackFactory<? extends T> fallback,
+        RequestCapture capture, AsyncHttpExecutor executor, Supplier<Options> options,
+        Decoder decoder, ErrorDecoder errorDecoder, Executor decodeExecutor, String groupKey,
+        int maxConcurrentRequests) {
+        Map<Method, AsyncMethod> asyncMethods = new HashMap<>();
+        for (Method method : connectorClass.getMethods()) {
+            if (!isAsync(method)) {
+                continue;
+            }
+            Type returnType = method.getGenericReturnType();
+            if (!(returnType instanceof ParameterizedType)) {
+                throw new FeignConfigurationException(
+                    "CompletableFuture需要声明泛型类型：" + Feign.configKey(connectorClass, method));
+            }
+            String commandKey = connectorClass.getSimpleName() + "#" + method.getName();
+            HystrixObservableCommand.Setter setter = HystrixObservableCommand.Setter
+                .withGroupKey(HystrixCommandGroupKey.Factory.asKey(groupKey))
+                .andCommandKey(HystrixCommandKey.Factory.asKey(commandKey))
+                .andCommandPropertiesDefaults(HystrixCommandProperties.Setter()
+                    .withExecutionIsolationStrategy(ExecutionIsolationStrategy.SEMAPHORE)
+                    .withExecutionIsolationSemaphoreMaxConcurrentRequests(maxConcurrentRequests)
+                    .withFallbackIsolationSemaphoreMaxConcurrentRequests(maxConcurrentRequests));
+            asyncMethods.put(method, new AsyncMethod(setter,
+                ((ParameterizedType) returnType).getActualTypeArguments()[0],
+                Feign.configKey(connectorClass, method)));
+        }
+        return (T) Proxy.newProxyInstance(connectorClass.getClassLoader(),
+            new Class<?>[]{connectorClass},
+            new AsyncInvocationHandler(target, fallback, asyncMethods, capture, executor,
+                options, decoder, errorDecoder, Schedulers.from(decodeExecutor)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "Async(" + target + ")";
+            }
+        }
+        AsyncMethod asyncMethod = asyncMethods.get(method);
+        if (asyncMethod == null) {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Subscription subscription = new AsyncCommand(asyncMethod, method, args).toObservable()
+            .subscribe(result::complete, result::completeExceptionally, () -> result.complete(null));
+        result.whenComplete((value, e) -> {
+            if (result.isCancelled()) {
+                subscription.unsubscribe();
+            }
+        });
+        return result;
+    }
+
+    private Object decode(AsyncMethod asyncMethod, Response response) throws Exception {
+        if (asyncMethod.type == Response.class) {
+            return response;
+        }
+        int status = response.status();
+        if (status < 200 || status >= 300) {
+            throw errorDecoder.decode(asyncMethod.configKey, response);
+        }
+        if (asyncMethod.type == Void.class) {
+            Util.ensureClosed(response.body());
+            return null;
+        }
+        try {
+            return decoder.decode(response, asyncMethod.type);
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage(), e);
+        } finally {
+            Util.ensureClosed(response.body());
+        }
+    }
+
+    private static final class AsyncMethod {
+
+        private final HystrixObservableCommand.Setter setter;
+        private final Type type;
+        private final String configKey;
+
+        AsyncMethod(HystrixObservableCommand.Setter setter, Type type, String configKey) {
+            this.setter = setter;
+            this.type = type;
+            this.configKey = configKey;
+        }
+    }
+
+    /**
+     * 信号量隔离，construct只发起请求，响应和失败都切换到decodeScheduler上处理.
+     */
+    private final class AsyncCommand extends HystrixObservableCommand<Object> {
+
+        private final AsyncMethod asyncMethod;
+        private final Method method;
+        private final Object[] args;
+
+        AsyncCommand(AsyncMethod asyncMethod, Method method, Object[] args) {
+            super(asyncMethod.setter);
+            this.asyncMethod = asyncMethod;
+            this.method = method;
+            this.args = args;
+        }
+
+        @Override
+        protected Observable<Object> construct() {
+            Request request = capture.capture(method, args);
+            return executor.execute(request, options.get()).observeOn(decodeScheduler)
+                .map(response -> {
+                    try {
+                        return decode(asyncMethod, response);
+                    } catch (Exception e) {
+                        throw Exceptions.propagate(e);
+                    }
+                });
+        }
+
+        @Override
+        protected Observable<Object> resumeWithFallback() {
+            if (fallback == null) {
+                return super.resumeWithFallback();
+            }
+            CompletionStage<?> stage;
+            try {
+                stage = (CompletionStage<?>) method.invoke(
+                    fallback.create(getExecutionException()), args);
+            } catch (InvocationTargetException e) {
+                return Observable.error(e.getCause());
+            } catch (IllegalAccessException e) {
+                return Observable.error(e);
+            }
+            if (stage == null) {
+                return Observable.just(null);
+            }
+            return Observable.create(subscriber -> stage.whenComplete((value, e) -> {
+                if (e != null) {
+                    subscriber.onError(e);
+                } else {
+                    subscriber.onNext(value);
+                    subscriber.onCompleted();
+                }
+            }));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Counter;
+import com.netflix.hystrix.Hystrix;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.strategy.properties.HystrixPropertiesFactory;
+import feign.RetryableException;
+import feign.Retryer;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按endpointConfig重试：指数退避加full jitter，每个Connector.method一个令牌桶限制重试占请求数的比例，
+ * 下游故障时不会成倍放大流量. 只重试幂等方法的IO异常和retryableStatuses中的状态码，
+ * 所有尝试都要在hystrix(或resilience: lightweight)剩余的超时时间内完成，来不及时直接放弃.
+ * feign每次调用clone一个实例，同一个key的实例共用预算和指标.
+ *
+ * @author Ryan
+ */
+class BudgetedRetryer implements Retryer {
+
+    /**
+     * 预算最多积攒的令牌数，也就是允许连续重试的次数.
+     */
+    private static final int MAX_TOKENS = 10;
+
+    private final LiveEndpoint endpoint;
+    private final TokenBucket budget;
+    private final FeignMetrics metrics;
+    private final String connector;
+    /**
+     * 同一个key共用的实例，指标注册在它上面.
+     */
+    private final BudgetedRetryer prototype;
+    private volatile Counters counters;
+    /**
+     * 本次调用的截止时间(System.nanoTime)，0表示没有超时.
+     */
+    private final long deadlineNanos;
+    private int attempt = 1;
+    private long attemptStart;
+
+    BudgetedRetryer(LiveEndpoint endpoint, FeignMetrics metrics, String connector) {
+        this.endpoint = endpoint;
+        this.budget = new TokenBucket(MAX_TOKENS);
+        this.metrics = metrics;
+        this.connector = connector;
+        this.prototype = this;
+        this.deadlineNanos = 0;
+    }
+
+    private BudgetedRetryer(BudgetedRetryer prototype, long deadlineNanos) {
+        this.endpoint = prototype.endpoint;
+        this.budget = prototype.budget;
+        this.metrics = prototype.metrics;
+        this.connector = prototype.connector;
+        this.prototype = prototype;
+        this.deadlineNanos = deadlineNanos;
+        this.attemptStart = System.nanoTime();
+    }
+
+    /**
+     * 在调用线程上开始一次调用，retryMaxAttempts不大于1时不重试.
+     */
+    @Override
+    public Retryer clone() {
+        EndpointConfig config = endpoint.config();
+        if (config.getRetryMaxAttempts() <= 1) {
+            return NEVER_RETRY;
+        }
+        budget.deposit(config.getRetryBudgetPercent() / 100.0);
+        return new BudgetedRetryer(this, deadline());
+    }
+
+    @Override
+    public void continueOrPropagate(RetryableException e) {
+        EndpointConfig config = endpoint.config();
+        if (attempt >= config.getRetryMaxAttempts() || !isRetryable(e)
+            || Thread.currentThread().isInterrupted()) {
+            throw propagate(e);
+        }
+        long now = System.nanoTime();
+        long backoff = backoffNanos(config, e);
+        if (backoff < 0 || deadlineNanos != 0
+            && now + backoff + (now - attemptStart) > deadlineNanos) {
+            //按上一次尝试的耗时估计，等待后再试一次会超过截止时间
+            prototype.counters().deadlineExceeded.increment();
+            throw propagate(e);
+        }
+        if (!budget.tryAcquire()) {
+            prototype.counters().budgetExhausted.increment();
+            throw propagate(e);
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(backoff);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw propagate(e);
+        }
+        attempt++;
+        attemptStart = System.nanoTime();
+        prototype.counters().retried.increment();
+    }
+
+    /**
+     * 默认不重试，第一次用到时才注册指标.
+     */
+    private Counters counters() {
+        Counters counters = this.counters;
+        if (counters == null) {
+            synchronized (this) {
+                counters = this.counters;
+                if (counters == null) {
+                    counters = new Counters(metrics, connector);
+                    this.counters = counters;
+                }
+            }
+        }
+        return counters;
+    }
+
+    private static final class Counters {
+
+        final Counter retried;
+        final Counter budgetExhausted;
+        final Counter deadlineExceeded;
+
+        Counters(FeignMetrics metrics, String connector) {
+            this.retried = metrics.counter(FeignMetrics.RETRY, connector, "retried");
+            this.budgetExhausted = metrics.counter(FeignMetrics.RETRY, connector,
+                "budget_exhausted");
+            this.deadlineExceeded = metrics.counter(FeignMetrics.RETRY, connector,
+                "deadline_exceeded");
+        }
+    }
+
+    /**
+     * IO异常只重试幂等方法，错误状态码已经由FeignErrorDecoder按retryableStatuses过滤过.
+     */
+    private static boolean isRetryable(RetryableException e) {
+        if (e.getCause() instanceof IOException) {
+            return isIdempotent(CallContext.current().requestMethod);
+        }
+        return true;
+    }
+
+    static boolean isIdempotent(String method) {
+        return HedgingClient.isSafe(method) || "PUT".equals(method) || "DELETE".equals(method);
+    }
+
+    /**
+     * 第n次重试在[0, min(retryMaxBackoffMillis, retryBackoffMillis * 2^(n-1))]之间随机等待.
+     * 服务端返回了Retry-After时至少等到该时间，超过retryMaxBackoffMillis时返回-1，不再重试.
+     */
+    private long backoffNanos(EndpointConfig config, RetryableException e) {
+        long max = config.getRetryMaxBackoffMillis();
+        long ceiling = Math.min(max, config.getRetryBackoffMillis() << Math.min(attempt - 1, 30));
+        long backoff = ThreadLocalRandom.current().nextLong(Math.max(0, ceiling) + 1);
+        if (e.retryAfter() != null) {
+            long retryAfter = e.retryAfter().getTime() - System.currentTimeMillis();
+            if (retryAfter > max) {
+                return -1;
+            }
+            backoff = Math.max(backoff, retryAfter);
+        }
+        return TimeUnit.MILLISECONDS.toNanos(backoff);
+    }
+
+    /**
+     * 放弃重试时抛出原来的异常，状态码错误还原成FeignErrorException.
+     */
+    private static RuntimeException propagate(RetryableException e) {
+        return e.getCause() instanceof FeignErrorException ? (FeignErrorException) e.getCause()
+            : e;
+    }
+
+    /**
+     * resilience: lightweight时取CallContext中的截止时间；在hystrix command中执行时按command的超时配置，
+     * hystrix从提交任务开始计时，所以要减去排队时间.
+     */
+    private static long deadline() {
+        CallContext context = CallContext.current();
+        if (context.deadlineNanos != 0) {
+            return context.deadlineNanos;
+        }
+        HystrixCommandKey commandKey = Hystrix.getCurrentThreadExecutingCommand();
+        if (commandKey == null) {
+            return 0;
+        }
+        HystrixCommandProperties properties = HystrixPropertiesFactory
+            .getCommandProperties(commandKey, null);
+        if (!properties.executionTimeoutEnabled().get()) {
+            return 0;
+        }
+        return System.nanoTime() - Math.max(0, context.queueWaitNanos)
+            + TimeUnit.MILLISECONDS.toNanos(properties.executionTimeoutInMilliseconds().get());
+    }
+}
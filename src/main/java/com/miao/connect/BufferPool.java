@@ -0,0 +1,242 @@
+package com.miao.connect;
+
+import java.io.Closeable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 编解码和client共用的byte[]缓冲池，按2的幂分成512B到1MB的size class. 每个size class是一组按线程id分段的槽位，
+ * 借出和归还都只用CAS，没有空闲的缓冲区时直接分配，不会阻塞. 超过1MB的缓冲区直接分配，不回收.
+ * 大于64KB的size class只保留四分之一的槽位，限制常驻的内存.
+ * 借出的{@link Buffer}用完后要close，开启leakDetection(测试时)后记录借出的位置，没有归还就被回收时打印ERROR日志.
+ * 共用的缓冲池属于整个JVM，用系统属性{@value #LEAK_DETECTION_PROPERTY}开启泄漏检测.
+ *
+ * @author Ryan
+ */
+final class BufferPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BufferPool.class);
+    static final String LEAK_DETECTION_PROPERTY = "feign.bufferPool.leakDetection";
+    private static final BufferPool SHARED = new BufferPool(
+        Runtime.getRuntime().availableProcessors() * 2);
+
+    static {
+        SHARED.setLeakDetection(Boolean.getBoolean(LEAK_DETECTION_PROPERTY));
+    }
+
+    private static final int MIN_SHIFT = 9;
+    static final int MIN_SIZE = 1 << MIN_SHIFT;
+    static final int MAX_SIZE = 1 << 20;
+    private static final int LARGE_SIZE = 64 * 1024;
+    /**
+     * 每次借出和归还最多尝试的槽位数，从当前线程对应的槽位开始.
+     */
+    private static final int PROBES = 4;
+
+    /**
+     * 泛型数组不能直接创建，通过{@link #slots(int)}取出.
+     */
+    private final AtomicReferenceArray<?>[] slots;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder leased = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final Set<LeakRef> tracked = ConcurrentHashMap.newKeySet();
+    private final ReferenceQueue<Buffer> collected = new ReferenceQueue<>();
+    private volatile boolean leakDetection;
+
+    /**
+     * 构造器.
+     *
+     * @param stripes 每个size class的槽位数，取不小于它的2的幂
+     */
+    BufferPool(int stripes) {
+        int size = Integer.highestOneBit(Math.max(stripes, PROBES) - 1) << 1;
+        int classes = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+        this.slots = new AtomicReferenceArray<?>[classes];
+        for (int i = 0; i < classes; i++) {
+            slots[i] = new AtomicReferenceArray<byte[]>(
+                MIN_SIZE << i > LARGE_SIZE ? Math.max(PROBES, size / 4) : size);
+        }
+    }
+
+    static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * 借出一个不小于size的缓冲区，内容是上一次使用留下的，不会清零.
+     */
+    Buffer acquire(int size) {
+        if (leakDetection) {
+            reportLeaks();
+        }
+        int sizeClass = sizeClass(size);
+        byte[] array = sizeClass < 0 ? null : poll(slots(sizeClass));
+        if (array == null) {
+            misses.increment();
+            array = new byte[sizeClass < 0 ? size : MIN_SIZE << sizeClass];
+        } else {
+            hits.increment();
+        }
+        leased.increment();
+        Buffer buffer = new Buffer(this, array, sizeClass);
+        if (leakDetection) {
+            buffer.leak = new LeakRef(buffer, collected);
+            tracked.add(buffer.leak);
+        }
+        return buffer;
+    }
+
+    private void release(Buffer buffer) {
+        leased.decrement();
+        if (buffer.leak != null) {
+            tracked.remove(buffer.leak);
+            buffer.leak.clear();
+            buffer.leak = null;
+        }
+        if (buffer.sizeClass >= 0) {
+            offer(slots(buffer.sizeClass), buffer.array);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private AtomicReferenceArray<byte[]> slots(int sizeClass) {
+        return (AtomicReferenceArray<byte[]>) slots[sizeClass];
+    }
+
+    /**
+     * 512B以下为0，超过MAX_SIZE时为-1.
+     */
+    private static int sizeClass(int size) {
+        if (size > MAX_SIZE) {
+            return -1;
+        }
+        if (size <= MIN_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static byte[] poll(AtomicReferenceArray<byte[]> stripes) {
+        int mask = stripes.length() - 1;
+        int start = probe();
+        for (int i = 0; i < PROBES; i++) {
+            int index = (start + i) & mask;
+            byte[] array = stripes.get(index);
+            if (array != null && stripes.compareAndSet(index, array, null)) {
+                return array;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 附近的槽位都满了时丢弃.
+     */
+    private static void offer(AtomicReferenceArray<byte[]> stripes, byte[] array) {
+        int mask = stripes.length() - 1;
+        int start = probe();
+        for (int i = 0; i < PROBES; i++) {
+            int index = (start + i) & mask;
+            if (stripes.get(index) == null && stripes.compareAndSet(index, null, array)) {
+                return;
+            }
+        }
+    }
+
+    private static int probe() {
+        return (int) Thread.currentThread().getId();
+    }
+
+    /**
+     * 开启后每次借出都记录调用栈，只建议在测试时打开. 共用的缓冲池由系统属性决定，不要在这里修改.
+     */
+    void setLeakDetection(boolean leakDetection) {
+        this.leakDetection = leakDetection;
+    }
+
+    /**
+     * 检查已经被回收但没有归还的缓冲区，打印借出的位置.
+     *
+     * @return 这次发现的泄漏数
+     */
+    int reportLeaks() {
+        int found = 0;
+        Reference<? extends Buffer> reference;
+        while ((reference = collected.poll()) != null) {
+            if (tracked.remove(reference)) {
+                found++;
+                leaks.increment();
+                leased.decrement();
+                LOGGER.error("缓冲区没有归还就被回收了，借出的位置：", ((LeakRef) reference).stack);
+            }
+        }
+        return found;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * 借出还没有归还的缓冲区数，没有开启leakDetection时泄漏的缓冲区一直算在里面.
+     */
+    long leased() {
+        return leased.sum();
+    }
+
+    long leaks() {
+        return leaks.sum();
+    }
+
+    /**
+     * 一次借出，close后归还，多次close只归还一次. 归还后不能再使用array().
+     */
+    static final class Buffer implements Closeable {
+
+        private final BufferPool pool;
+        private final byte[] array;
+        private final int sizeClass;
+        private boolean closed;
+        private LeakRef leak;
+
+        private Buffer(BufferPool pool, byte[] array, int sizeClass) {
+            this.pool = pool;
+            this.array = array;
+            this.sizeClass = sizeClass;
+        }
+
+        byte[] array() {
+            return array;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pool.release(this);
+            }
+        }
+    }
+
+    private static final class LeakRef extends WeakReference<Buffer> {
+
+        private final Throwable stack = new Throwable("借出缓冲区");
+
+        LeakRef(Buffer buffer, ReferenceQueue<Buffer> queue) {
+            super(buffer, queue);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.miao.connect;
+
+import com.miao.connect.BufferPool.Buffer;
+import com.miao.connect.FeignMetrics.Counter;
+import com.miao.connect.ResponseCache.CachePolicy;
+import com.miao.connect.ResponseCache.CachedResponse;
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import feign.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按http共享缓存的语义缓存GET请求的响应. 遵循Cache-Control(no-store, no-cache, private, max-age)和Expires，
+ * 过期后带上If-None-Match/If-Modified-Since重新校验，304时继续使用缓存的响应.
+ * 配置了cacheTtlMillis时用它代替响应里的有效期.
+ * 缓存在所有connector之间共用，按url保存，Accept和响应Vary列出的请求header不同时不命中.
+ * 带Authorization或Cookie的请求(包括interceptor加上的)既不读也不写缓存，
+ * private、带Set-Cookie或Vary: *的响应不缓存，避免一个用户的响应被其它调用方拿到.
+ *
+ * @author Ryan
+ */
+class CachingClient implements Client {
+
+    private final Client delegate;
+    private final ResponseCache cache;
+    private final long ttlMillis;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter revalidations;
+    private final Counter evictions;
+
+    /**
+     * 构造器.
+     *
+     * @param ttlMillis 覆盖响应中的有效期，-1为按响应header计算
+     */
+    CachingClient(Client delegate, ResponseCache cache, long ttlMillis, FeignMetrics metrics,
+        String connector) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.ttlMillis = ttlMillis;
+        this.hits = metrics.counter(FeignMetrics.CACHE, connector, "hit");
+        this.misses = metrics.counter(FeignMetrics.CACHE, connector, "miss");
+        this.revalidations = metrics.counter(FeignMetrics.CACHE, connector, "revalidated");
+        this.evictions = metrics.counter(FeignMetrics.CACHE, connector, "eviction");
+    }
+
+    @Override
+    public Response execute(Request request, Options options) throws IOException {
+        String method = request.method();
+        if (!"GET".equals(method)) {
+            if (!"HEAD".equals(method) && !"OPTIONS".equals(method)) {
+                cache.remove(request.url());
+            }
+            return delegate.execute(request, options);
+        }
+
+        if (HttpHeaderUtils.first(request.headers(), "Authorization") != null
+            || HttpHeaderUtils.first(request.headers(), "Cookie") != null) {
+            return delegate.execute(request, options);
+        }
+
+        String key = request.url();
+        long now = System.currentTimeMillis();
+        CachedResponse cached = cache.get(key);
+        if (cached != null && !cached.matches(request.headers())) {
+            cached = null;
+        }
+        if (cached != null && now < cached.freshUntil) {
+            hits.increment();
+            return toResponse(cached, request);
+        }
+
+        Request actual = request;
+        if (cached != null) {
+            actual = conditional(request, cached);
+            if (actual == null) {
+                cached = null;
+                actual = request;
+            }
+        }
+        Response response = delegate.execute(actual, options);
+        if (cached != null && response.status() == 304) {
+            revalidations.increment();
+            Util.ensureClosed(response.body());
+            cached.freshUntil = freshUntil(revalidatedPolicy(response, cached, now), now);
+            return toResponse(cached, request);
+        }
+        misses.increment();
+        return store(key, request, response, now);
+    }
+
+    /**
+     * 带上校验条件的请求，缓存没有ETag和Last-Modified时返回null.
+     */
+    private static Request conditional(Request request, CachedResponse cached) {
+        String etag = cached.etag();
+        String lastModified = cached.lastModified();
+        if (etag == null && lastModified == null) {
+            return null;
+        }
+        Map<String, Collection<String>> headers = request.headers();
+        if (etag != null) {
+            headers = HttpHeaderUtils.with(headers, "If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers = HttpHeaderUtils.with(headers, "If-Modified-Since", lastModified);
+        }
+        return Request.create(request.method(), request.url(), headers, request.body(),
+            request.charset());
+    }
+
+    /**
+     * 304响应没有带缓存header时沿用原来响应的.
+     */
+    private static CachePolicy revalidatedPolicy(Response notModified, CachedResponse cached,
+        long now) {
+        boolean hasPolicy = !HttpHeaderUtils.values(notModified.headers(), "Cache-Control")
+            .isEmpty() || HttpHeaderUtils.first(notModified.headers(), "Expires") != null;
+        return CachePolicy.of(hasPolicy ? notModified.headers() : cached.headers, now);
+    }
+
+    private Response store(String key, Request request, Response response, long now)
+        throws IOException {
+        if (response.status() != 200 || response.body() == null) {
+            return response;
+        }
+        CachePolicy policy = CachePolicy.of(response.headers(), now);
+        if (policy.noStore || policy.privateOnly
+            || HttpHeaderUtils.first(response.headers(), "Set-Cookie") != null) {
+            return response;
+        }
+        Map<String, String> vary = vary(request, response);
+        if (vary == null) {
+            return response;
+        }
+        boolean validators = HttpHeaderUtils.first(response.headers(), "ETag") != null
+            || HttpHeaderUtils.first(response.headers(), "Last-Modified") != null;
+        long freshUntil = freshUntil(policy, now);
+        if (freshUntil <= now && !validators) {
+            return response;
+        }
+        Integer length = response.body().length();
+        if (length != null && length > cache.maxEntryBytes()) {
+            return response;
+        }
+
+        int limit = (int) Math.min(cache.maxEntryBytes(), Integer.MAX_VALUE - 8);
+        InputStream in = response.body().asInputStream();
+        //先读到缓冲池借来的缓冲区，确定要缓存后再按实际大小拷贝
+        Buffer buffer = BufferPool.shared()
+            .acquire(length != null ? length : Math.min(limit, 8192));
+        try {
+            int read = 0;
+            while (true) {
+                int capacity = Math.min(buffer.array().length, limit);
+                if (read == capacity) {
+                    if (read >= limit) {
+                        //超过单条缓存的上限，不缓存，已读的部分和剩下的流拼起来返回
+                        InputStream body = new SequenceInputStream(
+                            new ByteArrayInputStream(Arrays.copyOf(buffer.array(), read)), in);
+                        return response.toBuilder().body(body, null).build();
+                    }
+                    Buffer bigger = BufferPool.shared()
+                        .acquire((int) Math.min((long) capacity * 2, limit));
+                    System.arraycopy(buffer.array(), 0, bigger.array(), 0, read);
+                    buffer.close();
+                    buffer = bigger;
+                    capacity = Math.min(buffer.array().length, limit);
+                }
+                int n = in.read(buffer.array(), read, capacity - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            Util.ensureClosed(response.body());
+
+            CachedResponse cached = new CachedResponse(response.status(), response.reason(),
+                response.headers(), vary, Arrays.copyOf(buffer.array(), read), freshUntil,
+                evictions);
+            cache.put(key, cached);
+            return toResponse(cached, response.request());
+        } finally {
+            buffer.close();
+        }
+    }
+
+    /**
+     * 请求中Accept和响应Vary列出的header的值，Vary: *时返回null，表示不能缓存.
+     */
+    private static Map<String, String> vary(Request request, Response response) {
+        Map<String, String> vary = new HashMap<>();
+        vary.put("accept", CachedResponse.varyValue(request.headers(), "Accept"));
+        for (String value : HttpHeaderUtils.values(response.headers(), "Vary")) {
+            for (String name : value.split(",")) {
+                name = name.trim();
+                if (name.equals("*")) {
+                    return null;
+                }
+                if (!name.isEmpty()) {
+                    vary.put(name.toLowerCase(), CachedResponse.varyValue(request.headers(), name));
+                }
+            }
+        }
+        return vary;
+    }
+
+    private long freshUntil(CachePolicy policy, long now) {
+        if (ttlMillis >= 0) {
+            return now + ttlMillis;
+        }
+        if (policy.noCache || policy.maxAgeMillis < 0) {
+            return now;
+        }
+        return now + policy.maxAgeMillis;
+    }
+
+    private static Response toResponse(CachedResponse cached, Request request) {
+        return Response.builder()
+            .status(cached.status)
+            .reason(cached.reason)
+            .headers(cached.headers)
+            .body(cached.body)
+            .request(request)
+            .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.miao.connect;
+
+/**
+ * 一次请求在执行线程上的上下文，hystrix线程、client和decoder之间用来传递数据.
+ *
+ * @author Ryan
+ */
+final class CallContext {
+
+    private static final ThreadLocal<CallContext> CURRENT = ThreadLocal.withInitial(CallContext::new);
+
+    /**
+     * 在hystrix线程池队列中等待的时间，-1表示没有经过线程池.
+     */
+    long queueWaitNanos = -1;
+    /**
+     * resilience: lightweight时本次调用的截止时间(System.nanoTime)，0表示没有.
+     */
+    long deadlineNanos;
+    /**
+     * 最近一次发出的请求的HTTP方法，Retryer用来判断IO异常能否重试.
+     */
+    String requestMethod;
+    /**
+     * 开启phaseTiming时当前请求的分阶段耗时，请求发出到client返回之间有效.
+     */
+    CallTiming timing;
+
+    private CallContext() {
+    }
+
+    static CallContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 取出排队时间并清除.
+     */
+    long takeQueueWaitNanos() {
+        long nanos = queueWaitNanos;
+        queueWaitNanos = -1;
+        return nanos;
+    }
+}
@@ -0,0 +1,67 @@
+package com.miao.connect;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次请求各个阶段的耗时，开启phaseTiming时由InstrumentedClient创建并放到CallContext，
+ * 连接池client在调用线程上把DNS、连接、TLS握手和首字节时间记录到这里. 复用连接时前三个阶段为0.
+ *
+ * @author Ryan
+ */
+final class CallTiming {
+
+    final long startNanos = System.nanoTime();
+    long queueWaitNanos = -1;
+    long dnsNanos;
+    long connectNanos;
+    long tlsNanos;
+    /**
+     * 开始发送请求到读完响应头，包括服务端的处理时间.
+     */
+    long ttfbNanos;
+    /**
+     * client返回响应的时间点.
+     */
+    long responseAtNanos;
+    /**
+     * 读取响应体时等待网络数据的时间.
+     */
+    long bodyReadNanos;
+
+    /**
+     * 对冲时每次请求在executor线程上各自记录，胜出的那次复制到调用方的CallTiming.
+     */
+    void copyConnectionPhases(CallTiming attempt) {
+        dnsNanos = attempt.dnsNanos;
+        connectNanos = attempt.connectNanos;
+        tlsNanos = attempt.tlsNanos;
+        ttfbNanos = attempt.ttfbNanos;
+    }
+
+    /**
+     * 按阶段描述耗时，单位毫秒.
+     *
+     * @param decodeNanos 解码耗时，不包括读取响应体的时间
+     */
+    String describe(long decodeNanos) {
+        StringBuilder builder = new StringBuilder(128);
+        if (queueWaitNanos >= 0) {
+            append(builder, "queue", queueWaitNanos);
+        }
+        append(builder, "dns", dnsNanos);
+        append(builder, "connect", connectNanos);
+        append(builder, "tls", tlsNanos);
+        append(builder, "ttfb", ttfbNanos);
+        append(builder, "read", bodyReadNanos);
+        append(builder, "decode", decodeNanos);
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, String phase, long nanos) {
+        if (builder.length() > 0) {
+            builder.append(", ");
+        }
+        builder.append(phase).append('=')
+            .append(TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0).append("ms");
+    }
+}
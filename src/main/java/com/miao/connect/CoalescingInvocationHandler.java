@@ -0,0 +1,224 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Counter;
+import com.netflix.hystrix.HystrixCommand;
+import feign.Request;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import rx.Completable;
+import rx.Observable;
+import rx.Single;
+
+/**
+ * 合并同时进行的相同请求(single-flight). 同一个方法、url、header和body都相同的GET/HEAD请求，
+ * 只有第一个调用真正发出去，其余的调用等待并共享它的结果或异常.
+ * key在拦截器执行之前生成，只包含方法上声明的header，拦截器每次添加不同的header(如请求id)时也能合并.
+ * 拦截器按调用方添加的凭证不能被其它调用方拿到结果，所以先把拦截器作用在一个空白的RequestTemplate上，
+ * 添加的Authorization、Cookie等header和查询参数也放进key，凭证不同的请求不会合并.
+ * 注意共享的是同一个解码后的对象，调用方不应修改返回值.
+ * 返回Observable、HystrixCommand、Future等异步类型以及Iterator、Stream、Cursor的方法不合并.
+ *
+ * @author Ryan
+ */
+class CoalescingInvocationHandler implements InvocationHandler {
+
+    private static final Set<String> CREDENTIAL_HEADERS = new TreeSet<>(
+        String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        CREDENTIAL_HEADERS.addAll(Arrays.asList("Authorization", "Proxy-Authorization", "Cookie"));
+    }
+
+    private final Object target;
+    private final RequestCapture capture;
+    private final List<RequestInterceptor> requestInterceptors;
+    private final ConcurrentMap<Key, CompletableFuture<Object>> inFlight =
+        new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter joined;
+
+    private CoalescingInvocationHandler(Object target, RequestCapture capture,
+        List<RequestInterceptor> requestInterceptors, FeignMetrics metrics, String connector) {
+        this.target = target;
+        this.capture = capture;
+        this.requestInterceptors = requestInterceptors;
+        this.leaders = metrics.counter(FeignMetrics.COALESCE, connector, "leader");
+        this.joined = metrics.counter(FeignMetrics.COALESCE, connector, "joined");
+    }
+
+    /**
+     * 给connector套上合并请求的代理.
+     *
+     * @param capture 不带拦截器的RequestCapture，只用来生成key
+     * @param requestInterceptors target上的拦截器，只用来取出凭证
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T wrap(Class<T> connectorClass, T target, RequestCapture capture,
+        List<RequestInterceptor> requestInterceptors, FeignMetrics metrics, String connector) {
+        return (T) Proxy.newProxyInstance(connectorClass.getClassLoader(),
+            new Class<?>[]{connectorClass},
+            new CoalescingInvocationHandler(target, capture, requestInterceptors, metrics,
+                connector));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "Coalescing(" + target + ")";
+            }
+        }
+        if (!isBlocking(method) || JsonCursor.elementType(method.getGenericReturnType()) != null) {
+            return invokeTarget(method, args);
+        }
+        Request request = capture.capture(method, args);
+        if (!"GET".equals(request.method()) && !"HEAD".equals(request.method())) {
+            return invokeTarget(method, args);
+        }
+
+        Key key = new Key(method, request, credentials(request));
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            joined.increment();
+            return await(existing);
+        }
+        leaders.increment();
+        try {
+            Object result = invokeTarget(method, args);
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 拦截器在空白的RequestTemplate上添加的凭证header和查询参数，没有拦截器时为空.
+     */
+    private Map<String, Collection<String>> credentials(Request request) {
+        if (requestInterceptors.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        RequestTemplate scratch = new RequestTemplate().method(request.method());
+        for (RequestInterceptor interceptor : requestInterceptors) {
+            interceptor.apply(scratch);
+        }
+        Map<String, Collection<String>> credentials = new HashMap<>();
+        for (Entry<String, Collection<String>> header : scratch.headers().entrySet()) {
+            if (CREDENTIAL_HEADERS.contains(header.getKey())) {
+                credentials.put(header.getKey().toLowerCase(Locale.ROOT),
+                    new ArrayList<>(header.getValue()));
+            }
+        }
+        for (Entry<String, Collection<String>> query : scratch.queries().entrySet()) {
+            credentials.put("?" + query.getKey(), new ArrayList<>(query.getValue()));
+        }
+        return credentials;
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) throws Throwable {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待合并的请求时被中断", e);
+        }
+    }
+
+    /**
+     * 同步返回结果的方法才合并.
+     */
+    static boolean isBlocking(Method method) {
+        Class<?> type = method.getReturnType();
+        return type != void.class
+            && !Observable.class.isAssignableFrom(type)
+            && !Single.class.isAssignableFrom(type)
+            && !Completable.class.isAssignableFrom(type)
+            && !HystrixCommand.class.isAssignableFrom(type)
+            && !Future.class.isAssignableFrom(type)
+            && !CompletionStage.class.isAssignableFrom(type);
+    }
+
+    /**
+     * 方法、拦截器执行之前的请求加上拦截器添加的凭证作为合并的key.
+     */
+    private static final class Key {
+
+        private final Method method;
+        private final Request request;
+        private final Map<String, Collection<String>> credentials;
+        private final int hash;
+
+        Key(Method method, Request request, Map<String, Collection<String>> credentials) {
+            this.method = method;
+            this.request = request;
+            this.credentials = credentials;
+            this.hash = Objects.hash(method, request.method(), request.url(), request.headers(),
+                credentials) * 31 + Arrays.hashCode(request.body());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                && method.equals(other.method)
+                && request.method().equals(other.request.method())
+                && request.url().equals(other.request.url())
+                && request.headers().equals(other.request.headers())
+                && credentials.equals(other.credentials)
+                && Arrays.equals(request.body(), other.request.body());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
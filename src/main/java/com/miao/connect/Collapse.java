@@ -0,0 +1,46 @@
+package com.miao.connect;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记一个单key的Connector方法可以合并成批量请求. 时间窗口内(或攒够maxBatchSize个)的调用
+ * 会合并成一次bulkMethod调用，再把结果按key拆分给每个调用方.
+ * <p>
+ * 单key方法只能有一个参数，bulkMethod的参数是key的集合(List、Set、Collection或数组)，
+ * 返回Map(按key取结果)或List(和传入的key顺序一一对应).
+ *
+ * <pre>
+ * &#64;Collapse(bulkMethod = "getUsers")
+ * &#64;RequestLine("GET /users/{id}")
+ * User getUser(&#64;Param("id") Long id);
+ *
+ * &#64;RequestLine("GET /users?ids={ids}")
+ * Map&lt;Long, User&gt; getUsers(&#64;Param("ids") List&lt;Long&gt; ids);
+ * </pre>
+ *
+ * @author Ryan
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Collapse {
+
+    /**
+     * 同一个Connector中批量方法的名称.
+     */
+    String bulkMethod();
+
+    /**
+     * 合并的时间窗口，可以被配置collapseWindowMillis覆盖.
+     */
+    long windowMillis() default 10;
+
+    /**
+     * 单批最多的key数，可以被配置collapseMaxBatchSize覆盖.
+     */
+    int maxBatchSize() default 100;
+}
@@ -0,0 +1,96 @@
+package com.miao.connect;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把标记了{@link Collapse}的方法交给对应的{@link RequestCollapser}，其余方法直接调用.
+ *
+ * @author Ryan
+ */
+class CollapsingInvocationHandler implements InvocationHandler {
+
+    private final Object target;
+    private final Map<Method, RequestCollapser> collapsers;
+
+    private CollapsingInvocationHandler(Object target, Map<Method, RequestCollapser> collapsers) {
+        this.target = target;
+        this.collapsers = collapsers;
+    }
+
+    /**
+     * connectorClass中有{@link Collapse}方法时套上合并请求的代理，否则原样返回.
+     *
+     * @param windowMillis 配置的时间窗口，null时用注解上的值
+     * @param maxBatchSize 配置的批次大小，null时用注解上的值
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T wrap(Class<T> connectorClass, T target, Long windowMillis, Integer maxBatchSize,
+        FeignMetrics metrics, String connector) {
+        Map<Method, RequestCollapser> collapsers = new HashMap<>();
+        for (Method method : connectorClass.getMethods()) {
+            Collapse collapse = method.getAnnotation(Collapse.class);
+            if (collapse == null) {
+                continue;
+            }
+            Method bulkMethod = bulkMethod(connectorClass, method, collapse);
+            collapsers.put(method, new RequestCollapser(target, bulkMethod,
+                windowMillis != null ? windowMillis : collapse.windowMillis(),
+                maxBatchSize != null ? maxBatchSize : collapse.maxBatchSize(),
+                metrics.summary(FeignMetrics.BATCH_SIZE,
+                    connector + "#" + method.getName())));
+        }
+        if (collapsers.isEmpty()) {
+            return target;
+        }
+        return (T) Proxy.newProxyInstance(connectorClass.getClassLoader(),
+            new Class<?>[]{connectorClass}, new CollapsingInvocationHandler(target, collapsers));
+    }
+
+    private static Method bulkMethod(Class<?> connectorClass, Method method, Collapse collapse) {
+        String name = method.getDeclaringClass().getSimpleName() + "#" + method.getName();
+        if (method.getParameterCount() != 1 || !CoalescingInvocationHandler.isBlocking(method)) {
+            throw new FeignConfigurationException(
+                "@Collapse方法只能有一个参数且同步返回结果：" + name);
+        }
+        for (Method candidate : connectorClass.getMethods()) {
+            if (candidate.getName().equals(collapse.bulkMethod())
+                && candidate.getParameterCount() == 1
+                && RequestCollapser.isBulkParameter(candidate.getParameterTypes()[0])
+                && (Map.class.isAssignableFrom(candidate.getReturnType())
+                || List.class.isAssignableFrom(candidate.getReturnType()))) {
+                return candidate;
+            }
+        }
+        throw new FeignConfigurationException("没有找到" + name + "对应的批量方法："
+            + collapse.bulkMethod() + "，批量方法只能有一个集合参数，返回Map或List");
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "Collapsing(" + target + ")";
+            }
+        }
+        RequestCollapser collapser = collapsers.get(method);
+        if (collapser != null && args[0] != null) {
+            return collapser.submit(args[0]);
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import java.io.IOException;
+
+/**
+ * 开启compression时压缩请求体并解压响应体，在InstrumentedClient外层，记录的请求响应字节数是实际传输的大小.
+ *
+ * @author Ryan
+ */
+class CompressingClient implements Client {
+
+    private final Client delegate;
+    private final HttpCompression compression;
+
+    CompressingClient(Client delegate, HttpCompression compression) {
+        this.delegate = delegate;
+        this.compression = compression;
+    }
+
+    @Override
+    public Response execute(Request request, Options options) throws IOException {
+        return compression.decompress(delegate.execute(compression.compress(request), options));
+    }
+}
@@ -0,0 +1,21 @@
+package com.miao.connect;
+
+import lombok.Data;
+
+/**
+ * 自适应并发限制的配置，对应feign.endpointConfig.[Connector].[method]下的同名配置.
+ *
+ * @author Ryan
+ */
+@Data
+public class ConcurrencyLimitProperties {
+
+    /**
+     * 是否开启，默认不开启.
+     */
+    private boolean adaptiveConcurrency;
+    private int initialConcurrencyLimit = 20;
+    private int minConcurrencyLimit = 1;
+    private int maxConcurrencyLimit = 200;
+
+}
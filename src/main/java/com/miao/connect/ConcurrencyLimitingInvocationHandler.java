@@ -0,0 +1,162 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Counter;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import com.netflix.hystrix.exception.HystrixRuntimeException.FailureType;
+import com.netflix.hystrix.exception.HystrixTimeoutException;
+import feign.hystrix.FallbackFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 在调用线程上按{@link AdaptiveConcurrencyLimiter}限制一个endpoint的并发，在进入hystrix线程池之前就拒绝多出的调用.
+ * 被拒绝时调用fallback，没有fallback时抛出{@link FeignRejectedException}.
+ * 只限制同步返回结果和返回CompletionStage的方法，其它异步类型的方法直接调用.
+ * 这里只占用和释放并发，调用方拿到的可能是fallback的结果，响应时间在命令内部由{@link ConcurrencySamplingClient}记录.
+ *
+ * @author Ryan
+ */
+class ConcurrencyLimitingInvocationHandler implements InvocationHandler {
+
+    private final Object target;
+    private final Object fallback;
+    private final String connector;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Counter accepted;
+    private final Counter rejected;
+
+    private ConcurrencyLimitingInvocationHandler(Object target, Object fallback,
+        AdaptiveConcurrencyLimiter limiter, FeignMetrics metrics, String connector) {
+        this.target = target;
+        this.fallback = fallback;
+        this.connector = connector;
+        this.limiter = limiter;
+        this.accepted = metrics.counter(FeignMetrics.CONCURRENCY_CALLS, connector, "accepted");
+        this.rejected = metrics.counter(FeignMetrics.CONCURRENCY_CALLS, connector, "rejected");
+    }
+
+    /**
+     * 给connector套上自适应并发限制，整个connector的方法共用一个上限.
+     *
+     * @param limiter 同一个Connector.method的所有connector实例共用
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T wrap(Class<T> connectorClass, T target, T fallback,
+        AdaptiveConcurrencyLimiter limiter, FeignMetrics metrics, String connector) {
+        return (T) Proxy.newProxyInstance(connectorClass.getClassLoader(),
+            new Class<?>[]{connectorClass},
+            new ConcurrencyLimitingInvocationHandler(target, fallback, limiter, metrics,
+                connector));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "ConcurrencyLimiting(" + target + ")";
+            }
+        }
+        boolean stage = CompletionStage.class.isAssignableFrom(method.getReturnType());
+        if (method.isDefault() || !stage && !CoalescingInvocationHandler.isBlocking(method)) {
+            return invokeMethod(target, method, args);
+        }
+        if (!limiter.tryAcquire()) {
+            rejected.increment();
+            if (fallback != null) {
+                return invokeMethod(fallback, method, args);
+            }
+            FeignRejectedException e = new FeignRejectedException(
+                "超过自适应并发上限" + limiter.limit() + "：" + connector);
+            if (stage) {
+                //和AsyncInvocationHandler一样，异步方法的失败通过返回的future传递
+                CompletableFuture<Object> future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+                return future;
+            }
+            throw e;
+        }
+        accepted.increment();
+
+        Object result;
+        try {
+            result = invokeMethod(target, method, args);
+        } catch (Throwable e) {
+            onFailure(e);
+            limiter.release();
+            throw e;
+        }
+        if (stage && result != null) {
+            ((CompletionStage<?>) result).whenComplete((value, e) -> {
+                if (e != null) {
+                    onFailure(e);
+                }
+                limiter.release();
+            });
+        } else {
+            limiter.release();
+        }
+        return result;
+    }
+
+    private void onFailure(Throwable e) {
+        if (isOverload(e)) {
+            limiter.onDropped();
+        }
+    }
+
+    /**
+     * 把fallback包装成FallbackFactory，hystrix超时或拒绝后调用fallback时也算一次过载.
+     * 这种情况下调用方拿到的是fallback的结果，在这里看不到异常.
+     */
+    static <T> FallbackFactory<T> fallbackFactory(T fallback, AdaptiveConcurrencyLimiter limiter) {
+        return cause -> {
+            if (isOverload(cause)) {
+                limiter.onDropped();
+            }
+            return fallback;
+        };
+    }
+
+    /**
+     * hystrix超时或拒绝说明下游已经过载. 请求本身的超时已经由命令内部的{@link ConcurrencySamplingClient}记录，
+     * 其它异常不影响上限.
+     */
+    private static boolean isOverload(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HystrixTimeoutException
+                || cause instanceof RejectedExecutionException) {
+                return true;
+            }
+            if (cause instanceof HystrixRuntimeException) {
+                FailureType type = ((HystrixRuntimeException) cause).getFailureType();
+                if (type == FailureType.TIMEOUT || type == FailureType.REJECTED_THREAD_EXECUTION
+                    || type == FailureType.REJECTED_SEMAPHORE_EXECUTION) {
+                    return true;
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static Object invokeMethod(Object target, Method method, Object[] args)
+        throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import java.io.IOException;
+
+/**
+ * 在hystrix命令内部测量请求的耗时交给{@link AdaptiveConcurrencyLimiter}，
+ * 只有真正到达下游的请求才算样本，fallback和缓存命中不会拉低测得的无负载RTT.
+ *
+ * @author Ryan
+ */
+class ConcurrencySamplingClient implements Client {
+
+    private final Client delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    ConcurrencySamplingClient(Client delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Response execute(Request request, Options options) throws IOException {
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = delegate.execute(request, options);
+        } catch (IOException | RuntimeException e) {
+            limiter.onError(e);
+            throw e;
+        }
+        limiter.onResponse(System.nanoTime() - start, response.status());
+        return response;
+    }
+}
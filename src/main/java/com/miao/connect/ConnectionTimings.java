@@ -0,0 +1,135 @@
+package com.miao.connect;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * 连接池client的计时钩子：DNS解析、TCP连接、TLS握手和首字节时间. 都在调用线程上执行，
+ * 记录到CallContext中的{@link CallTiming}，没有开启phaseTiming时只多一次ThreadLocal读取.
+ *
+ * @author Ryan
+ */
+final class ConnectionTimings {
+
+    private ConnectionTimings() {
+    }
+
+    private static CallTiming current() {
+        return CallContext.current().timing;
+    }
+
+    static DnsResolver dnsResolver() {
+        return host -> {
+            CallTiming timing = current();
+            if (timing == null) {
+                return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            }
+            long start = System.nanoTime();
+            try {
+                return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            } finally {
+                timing.dnsNanos += System.nanoTime() - start;
+            }
+        };
+    }
+
+    static PlainConnectionSocketFactory plainSocketFactory() {
+        return new PlainConnectionSocketFactory() {
+            @Override
+            public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host,
+                InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                HttpContext context) throws IOException {
+                CallTiming timing = current();
+                if (timing == null) {
+                    return super.connectSocket(connectTimeout, socket, host, remoteAddress,
+                        localAddress, context);
+                }
+                long start = System.nanoTime();
+                try {
+                    return super.connectSocket(connectTimeout, socket, host, remoteAddress,
+                        localAddress, context);
+                } finally {
+                    timing.connectNanos += System.nanoTime() - start;
+                }
+            }
+        };
+    }
+
+    /**
+     * connectSocket包括TCP连接和TLS握手，握手在createLayeredSocket中，分开记录.
+     */
+    static SSLConnectionSocketFactory sslSocketFactory(SSLContext sslContext,
+        HostnameVerifier hostnameVerifier) {
+        return new SSLConnectionSocketFactory(sslContext, hostnameVerifier) {
+            @Override
+            public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host,
+                InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                HttpContext context) throws IOException {
+                CallTiming timing = current();
+                if (timing == null) {
+                    return super.connectSocket(connectTimeout, socket, host, remoteAddress,
+                        localAddress, context);
+                }
+                long start = System.nanoTime();
+                long tls = timing.tlsNanos;
+                try {
+                    return super.connectSocket(connectTimeout, socket, host, remoteAddress,
+                        localAddress, context);
+                } finally {
+                    timing.connectNanos += System.nanoTime() - start - (timing.tlsNanos - tls);
+                }
+            }
+
+            @Override
+            public Socket createLayeredSocket(Socket socket, String target, int port,
+                HttpContext context) throws IOException {
+                CallTiming timing = current();
+                if (timing == null) {
+                    return super.createLayeredSocket(socket, target, port, context);
+                }
+                long start = System.nanoTime();
+                try {
+                    return super.createLayeredSocket(socket, target, port, context);
+                } finally {
+                    timing.tlsNanos += System.nanoTime() - start;
+                }
+            }
+        };
+    }
+
+    /**
+     * 从开始发送请求到读完响应头.
+     */
+    static HttpRequestExecutor requestExecutor() {
+        return new HttpRequestExecutor() {
+            @Override
+            public HttpResponse execute(HttpRequest request, HttpClientConnection connection,
+                HttpContext context) throws IOException, HttpException {
+                CallTiming timing = current();
+                if (timing == null) {
+                    return super.execute(request, connection, context);
+                }
+                long start = System.nanoTime();
+                try {
+                    return super.execute(request, connection, context);
+                } finally {
+                    timing.ttfbNanos += System.nanoTime() - start;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Counter;
+import com.miao.connect.FeignMetrics.Summary;
+import com.miao.connect.FeignMetrics.Timer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个Connector.method的全部指标，每个key只创建一次，同一个key下的connector共用.
+ *
+ * @author Ryan
+ */
+class ConnectorMeters {
+
+    private static final int MAX_STATUS = 600;
+
+    final String connector;
+    final Timer queueWait;
+    final Timer exchange;
+    final Timer decode;
+    final Summary requestBytes;
+    final Summary responseBytes;
+    final Counter ioErrors;
+    final LongAdder inFlight = new LongAdder();
+
+    private final FeignMetrics metrics;
+    private final AtomicReferenceArray<Counter> responses = new AtomicReferenceArray<>(MAX_STATUS);
+
+    ConnectorMeters(FeignMetrics metrics, String connector) {
+        this.metrics = metrics;
+        this.connector = connector;
+        this.queueWait = metrics.timer(FeignMetrics.QUEUE_WAIT, connector);
+        this.exchange = metrics.timer(FeignMetrics.EXCHANGE, connector);
+        this.decode = metrics.timer(FeignMetrics.DECODE, connector);
+        this.requestBytes = metrics.summary(FeignMetrics.REQUEST_BYTES, connector);
+        this.responseBytes = metrics.summary(FeignMetrics.RESPONSE_BYTES, connector);
+        this.ioErrors = metrics.counter(FeignMetrics.RESPONSES, connector, "IO_ERROR");
+        metrics.gauge(FeignMetrics.IN_FLIGHT, connector, inFlight::sum);
+    }
+
+    /**
+     * 状态码对应的计数器，第一次出现时创建.
+     */
+    Counter response(int status) {
+        int index = status > 0 && status < MAX_STATUS ? status : 0;
+        Counter counter = responses.get(index);
+        if (counter == null) {
+            String outcome = index == 0 ? "UNKNOWN" : String.valueOf(status);
+            counter = metrics.counter(FeignMetrics.RESPONSES, connector, outcome);
+            if (!responses.compareAndSet(index, null, counter)) {
+                counter = responses.get(index);
+            }
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,133 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Counter;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * 每个FeignFactory一个的Connector缓存，key包含builder上所有影响Connector行为的配置.
+ * 超过最大数量时淘汰最久没有使用的，命中时只更新访问时间，不加锁.
+ *
+ * @author Ryan
+ */
+class ConnectorRegistry {
+
+    private final int maxSize;
+    private final FeignMetrics metrics;
+    private final ConcurrentMap<Key, Holder> connectors = new ConcurrentHashMap<>();
+
+    ConnectorRegistry(int maxSize, FeignMetrics metrics) {
+        if (maxSize < 1) {
+            throw new FeignConfigurationException("connectorCache.maxSize必须大于0：" + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 获取key对应的Connector，不存在时创建，同一个key只会创建一次.
+     * 命中时不拼接Connector.method，getSimpleName在java 8中没有缓存.
+     *
+     * @param factory 参数为Connector.method
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(Key key, Class<?> connectorClass, String connectorMethod,
+        Function<String, T> factory) {
+        Holder holder = connectors.get(key);
+        if (holder == null) {
+            String commandConfigKey = connectorClass.getSimpleName() + "." + connectorMethod;
+            holder = connectors.computeIfAbsent(key, k -> {
+                metrics.counter(FeignMetrics.CONNECTOR_CACHE, commandConfigKey, "miss")
+                    .increment();
+                return new Holder(factory.apply(commandConfigKey), commandConfigKey,
+                    metrics.counter(FeignMetrics.CONNECTOR_CACHE, commandConfigKey, "hit"));
+            });
+            if (connectors.size() > maxSize) {
+                evict();
+            }
+        } else {
+            holder.hits.increment();
+        }
+        holder.lastAccess = System.nanoTime();
+        return (T) holder.connector;
+    }
+
+    int size() {
+        return connectors.size();
+    }
+
+    /**
+     * 只在新建Connector后超出上限时调用，遍历找出最久没有使用的淘汰.
+     */
+    private synchronized void evict() {
+        while (connectors.size() > maxSize) {
+            Entry<Key, Holder> oldest = null;
+            for (Entry<Key, Holder> entry : connectors.entrySet()) {
+                if (oldest == null
+                    || entry.getValue().lastAccess - oldest.getValue().lastAccess < 0) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null || !connectors.remove(oldest.getKey(), oldest.getValue())) {
+                return;
+            }
+            metrics.counter(FeignMetrics.CONNECTOR_CACHE, oldest.getValue().commandConfigKey,
+                "eviction").increment();
+        }
+    }
+
+    /**
+     * 由各项配置组成的key，按equals比较，没有重写equals的对象(如decoder)按实例比较.
+     */
+    static final class Key {
+
+        private final Object[] parts;
+        private final int hash;
+
+        private Key(Object[] parts) {
+            this.parts = parts;
+            this.hash = Arrays.hashCode(parts);
+        }
+
+        /**
+         * 可变的参数(如拦截器列表)需要调用方先复制.
+         */
+        static Key of(Object... parts) {
+            return new Key(parts);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && Arrays.equals(parts, other.parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Holder {
+
+        private final Object connector;
+        private final String commandConfigKey;
+        private final Counter hits;
+        private volatile long lastAccess = System.nanoTime();
+
+        Holder(Object connector, String commandConfigKey, Counter hits) {
+            this.connector = connector;
+            this.commandConfigKey = commandConfigKey;
+            this.hits = hits;
+        }
+    }
+}
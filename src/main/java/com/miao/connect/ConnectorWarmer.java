@@ -0,0 +1,124 @@
+package com.miao.connect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.util.ClassUtils;
+
+/**
+ * feign.eagerInit.enabled为true时，在容器启动时扫描Connector的子接口，对endpointConfig中配置的每个
+ * Connector.method调用{@link FeignFactory.Builder#warmUp}，避免发布后第一批请求承担配置解析、类加载和建连的开销.
+ * 预热的是默认配置(默认的编解码器、没有拦截器和fallback)的Connector，调用方用同样的配置getConnector时直接命中缓存.
+ * 配置缺失时启动失败.
+ *
+ * @author Ryan
+ */
+class ConnectorWarmer implements SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectorWarmer.class);
+    private static final String ENDPOINT_CONFIG = "feign.endpointConfig.";
+
+    private final FeignFactory feignFactory;
+    private final ConfigurableEnvironment environment;
+    private final BeanFactory beanFactory;
+
+    ConnectorWarmer(FeignFactory feignFactory, ConfigurableEnvironment environment,
+        BeanFactory beanFactory) {
+        this.feignFactory = feignFactory;
+        this.environment = environment;
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.currentTimeMillis();
+        int endpoints = 0;
+        int connections = 0;
+        for (Class<? extends Connector> connectorClass : scan()) {
+            Set<String> methods = configuredMethods(connectorClass.getSimpleName());
+            if (methods.isEmpty()) {
+                throw new FeignConfigurationException(
+                    "没有配置：" + ENDPOINT_CONFIG + connectorClass.getSimpleName());
+            }
+            for (String method : methods) {
+                connections += feignFactory.builder().connectorMethod(method)
+                    .warmUp(connectorClass);
+                endpoints++;
+            }
+        }
+        LOGGER.info("预热了{}个endpoint，建立{}个连接，耗时{}ms", endpoints, connections,
+            System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 默认扫描@SpringBootApplication所在的包，可以用feign.eagerInit.basePackages指定.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Class<? extends Connector>> scan() {
+        String configured = environment.getProperty("feign.eagerInit.basePackages");
+        if (StringUtils.isBlank(configured) && !AutoConfigurationPackages.has(beanFactory)) {
+            throw new FeignConfigurationException("没有配置：feign.eagerInit.basePackages");
+        }
+        List<String> basePackages = StringUtils.isNotBlank(configured)
+            ? Arrays.asList(StringUtils.split(configured.replace(" ", ""), ','))
+            : AutoConfigurationPackages.get(beanFactory);
+        ClassPathScanningCandidateComponentProvider scanner =
+            new ClassPathScanningCandidateComponentProvider(false, environment) {
+                @Override
+                protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                    return beanDefinition.getMetadata().isInterface();
+                }
+            };
+        scanner.addIncludeFilter(new AssignableTypeFilter(Connector.class));
+        Set<String> classNames = new LinkedHashSet<>();
+        for (String basePackage : basePackages) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                classNames.add(candidate.getBeanClassName());
+            }
+        }
+        List<Class<? extends Connector>> connectors = new ArrayList<>();
+        for (String className : classNames) {
+            Class<?> type = ClassUtils.resolveClassName(className,
+                ClassUtils.getDefaultClassLoader());
+            if (type != Connector.class) {
+                connectors.add((Class<? extends Connector>) type);
+            }
+        }
+        return connectors;
+    }
+
+    /**
+     * 从配置中找出feign.endpointConfig.[Connector]下的所有key.
+     */
+    private Set<String> configuredMethods(String connector) {
+        String prefix = ENDPOINT_CONFIG + connector + ".";
+        Set<String> methods = new LinkedHashSet<>();
+        for (PropertySource<?> propertySource : environment.getPropertySources()) {
+            if (!(propertySource instanceof EnumerablePropertySource)) {
+                continue;
+            }
+            for (String name : ((EnumerablePropertySource<?>) propertySource).getPropertyNames()) {
+                int end = name.indexOf('.', prefix.length());
+                if (name.startsWith(prefix) && end > 0) {
+                    methods.add(name.substring(prefix.length(), end));
+                }
+            }
+        }
+        return methods;
+    }
+}
@@ -0,0 +1,60 @@
+package com.miao.connect;
+
+import feign.FeignException;
+import feign.Response;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * 按响应的Content-Type选择解码器，同一个接口可以根据服务端的选择返回json、smile、cbor或protobuf.
+ * 没有Content-Type或没有对应的解码器时使用默认解码器，application/xxx+json按application/json处理.
+ *
+ * @author Ryan
+ */
+public class ContentNegotiatingDecoder implements Decoder {
+
+    private static final String JSON = "application/json";
+
+    private final Map<String, Decoder> decoders;
+    private final Decoder defaultDecoder;
+
+    /**
+     * 构造器.
+     *
+     * @param decoders key为不带参数的media type，如application/x-jackson-smile
+     * @param defaultDecoder 没有匹配的解码器时使用
+     */
+    public ContentNegotiatingDecoder(Map<String, Decoder> decoders, Decoder defaultDecoder) {
+        this.decoders = new HashMap<>();
+        for (Entry<String, Decoder> entry : decoders.entrySet()) {
+            this.decoders.put(entry.getKey().trim().toLowerCase(), entry.getValue());
+        }
+        this.defaultDecoder = defaultDecoder;
+    }
+
+    @Override
+    public Object decode(Response response, Type type)
+        throws IOException, DecodeException, FeignException {
+        return decoderFor(HttpHeaderUtils.first(response.headers(), "Content-Type"))
+            .decode(response, type);
+    }
+
+    Decoder decoderFor(String contentType) {
+        if (contentType == null) {
+            return defaultDecoder;
+        }
+        int end = contentType.indexOf(';');
+        String mediaType = (end < 0 ? contentType : contentType.substring(0, end)).trim()
+            .toLowerCase();
+        Decoder decoder = decoders.get(mediaType);
+        if (decoder == null && mediaType.endsWith("+json")) {
+            decoder = decoders.get(JSON);
+        }
+        return decoder == null ? defaultDecoder : decoder;
+    }
+}
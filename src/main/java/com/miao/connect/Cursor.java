@@ -0,0 +1,32 @@
+package com.miao.connect;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 从响应流中逐个解析json数组元素的游标，内存中只有当前元素. 读完或出错时自动关闭，
+ * 提前结束时需要调用close释放连接，建议放在try-with-resources中.
+ *
+ * @param <T> 数组元素类型
+ * @author Ryan
+ */
+public interface Cursor<T> extends Iterator<T>, Closeable {
+
+    /**
+     * 关闭响应流并释放连接，可以重复调用.
+     */
+    @Override
+    void close();
+
+    /**
+     * 转换成顺序的Stream，关闭Stream时关闭游标.
+     */
+    default Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+}
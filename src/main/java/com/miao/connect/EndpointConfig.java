@@ -0,0 +1,394 @@
+package com.miao.connect;
+
+import feign.Request;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.env.PropertyResolver;
+
+/**
+ * 一个Connector.method绑定好的endpointConfig，创建后不再修改. 配置刷新时整体替换成新的实例.
+ *
+ * @author Ryan
+ */
+@Getter
+class EndpointConfig {
+
+    private final String url;
+    /**
+     * 只配置url时为只有url的列表.
+     */
+    private final List<String> urls;
+    private final int readTimeout;
+    private final int connectTimeout;
+    private final String clientType;
+    private final PoolProperties pool;
+    private final boolean cacheEnabled;
+    private final long cacheTtlMillis;
+    private final boolean compression;
+    private final int compressionMinRequestBytes;
+    private final boolean coalesce;
+    private final Long collapseWindowMillis;
+    private final Integer collapseMaxBatchSize;
+    private final String resilience;
+    private final ResilienceProperties resilienceProperties;
+    private final LoadBalancerProperties loadBalancerProperties;
+    private final ConcurrencyLimitProperties concurrencyLimitProperties;
+    private final ThreadPoolProperties threadPoolProperties;
+    private final int warmConnections;
+    /**
+     * 和hedgeDelayPercentile都没有配置时不对冲.
+     */
+    private final Long hedgeDelayMillis;
+    private final Double hedgeDelayPercentile;
+    private final int hedgeBudgetPercent;
+    private final int retryMaxAttempts;
+    private final long retryBackoffMillis;
+    private final long retryMaxBackoffMillis;
+    private final int retryBudgetPercent;
+    /**
+     * 这些状态码的错误响应在开启重试时可以重试，包括非幂等的方法.
+     */
+    private final Set<Integer> retryableStatuses;
+    private final boolean phaseTiming;
+    /**
+     * 超过这个时间的调用记录日志，配置了就会开启phaseTiming.
+     */
+    private final Long slowCallMillis;
+    private final long slowCallLogIntervalMillis;
+    private final int errorBodyMaxBytes;
+    /**
+     * 这些状态码的错误响应不读取响应体.
+     */
+    private final Set<Integer> errorBodySkipStatuses;
+
+    /**
+     * 读取feign.endpointConfig.[commandConfigKey]下的配置，缺少必填项或者格式错误时抛出
+     * FeignConfigurationException.
+     */
+    EndpointConfig(PropertyResolver source, String commandConfigKey) {
+        PropertyResolver environment = new CheckedPropertyResolver(source);
+        String prefix = "feign.endpointConfig." + commandConfigKey + ".";
+        String urlKey = prefix + "url";
+        String readTimeoutKey = prefix + "readTimeoutMillis";
+        String connectTimeoutKey = prefix + "connectTimeoutMillis";
+
+        String url = environment.getProperty(urlKey);
+        List<String> urls = readList(environment, prefix + "urls");
+        if (StringUtils.isBlank(url) && !urls.isEmpty()) {
+            url = urls.get(0);
+        }
+        String readTimeout = environment.getProperty(readTimeoutKey);
+        String connectTimeout = environment.getProperty(connectTimeoutKey);
+
+        if (StringUtils.isBlank(url)) {
+            throw new FeignConfigurationException("没有配置：" + urlKey);
+        }
+        if (StringUtils.isBlank(readTimeout)) {
+            throw new FeignConfigurationException("没有配置：" + readTimeoutKey);
+        }
+        if (StringUtils.isBlank(connectTimeout)) {
+            throw new FeignConfigurationException("没有配置：" + connectTimeoutKey);
+        }
+        this.url = url;
+        this.urls = Collections.unmodifiableList(
+            urls.isEmpty() ? Collections.singletonList(url) : urls);
+        this.readTimeout = environment.getProperty(readTimeoutKey, Integer.class);
+        this.connectTimeout = environment.getProperty(connectTimeoutKey, Integer.class);
+
+        this.clientType = environment
+            .getProperty(prefix + "client", FeignClientProvider.CLIENT_POOLED);
+        PoolProperties pool = new PoolProperties();
+        pool.setMaxConnections(environment.getProperty(prefix + "maxConnections",
+            Integer.class, pool.getMaxConnections()));
+        pool.setMaxConnectionsPerRoute(environment.getProperty(
+            prefix + "maxConnectionsPerRoute", Integer.class,
+            pool.getMaxConnectionsPerRoute()));
+        pool.setIdleTimeoutMillis(environment.getProperty(prefix + "idleTimeoutMillis",
+            Long.class, pool.getIdleTimeoutMillis()));
+        pool.setKeepAliveMillis(environment.getProperty(prefix + "keepAliveMillis",
+            Long.class, pool.getKeepAliveMillis()));
+        pool.setMaxConcurrentStreams(environment.getProperty(prefix + "maxConcurrentStreams",
+            Integer.class, pool.getMaxConcurrentStreams()));
+        if (pool.getMaxConcurrentStreams() < 1) {
+            throw new FeignConfigurationException("maxConcurrentStreams必须大于0："
+                + pool.getMaxConcurrentStreams() + ", key: " + commandConfigKey);
+        }
+        this.pool = pool;
+
+        this.cacheEnabled = environment.getProperty(prefix + "cacheEnabled", Boolean.class,
+            false);
+        this.cacheTtlMillis = environment.getProperty(prefix + "cacheTtlMillis", Long.class,
+            -1L);
+        this.compression = environment.getProperty(prefix + "compression", Boolean.class,
+            false);
+        this.compressionMinRequestBytes = environment.getProperty(
+            prefix + "compressionMinRequestBytes", Integer.class, 2048);
+        this.coalesce = environment.getProperty(prefix + "coalesce", Boolean.class, false);
+        this.collapseWindowMillis = environment.getProperty(prefix + "collapseWindowMillis",
+            Long.class);
+        this.collapseMaxBatchSize = environment.getProperty(prefix + "collapseMaxBatchSize",
+            Integer.class);
+
+        this.resilience = environment.getProperty(prefix + "resilience",
+            FeignFactory.RESILIENCE_HYSTRIX);
+        if (!FeignFactory.RESILIENCE_HYSTRIX.equalsIgnoreCase(resilience)
+            && !FeignFactory.RESILIENCE_LIGHTWEIGHT.equalsIgnoreCase(resilience)) {
+            throw new FeignConfigurationException(
+                "不支持的resilience类型：" + resilience + ", key: " + commandConfigKey);
+        }
+        ResilienceProperties resilienceProperties = new ResilienceProperties();
+        resilienceProperties.setTimeoutMillis(environment.getProperty(prefix + "timeoutMillis",
+            Long.class, (long) this.connectTimeout + this.readTimeout));
+        resilienceProperties.setMaxConcurrentCalls(environment.getProperty(
+            prefix + "maxConcurrentCalls", Integer.class,
+            resilienceProperties.getMaxConcurrentCalls()));
+        resilienceProperties.setRingBufferSize(environment.getProperty(
+            prefix + "ringBufferSize", Integer.class,
+            resilienceProperties.getRingBufferSize()));
+        resilienceProperties.setFailureRateThreshold(environment.getProperty(
+            prefix + "failureRateThreshold", Integer.class,
+            resilienceProperties.getFailureRateThreshold()));
+        resilienceProperties.setWaitDurationInOpenStateMillis(environment.getProperty(
+            prefix + "waitDurationInOpenStateMillis", Long.class,
+            resilienceProperties.getWaitDurationInOpenStateMillis()));
+        resilienceProperties.setPermittedCallsInHalfOpenState(environment.getProperty(
+            prefix + "permittedCallsInHalfOpenState", Integer.class,
+            resilienceProperties.getPermittedCallsInHalfOpenState()));
+        this.resilienceProperties = resilienceProperties;
+
+        LoadBalancerProperties loadBalancerProperties = new LoadBalancerProperties();
+        loadBalancerProperties.setLoadBalancer(environment.getProperty(
+            prefix + "loadBalancer", loadBalancerProperties.getLoadBalancer()));
+        loadBalancerProperties.setEjectionConsecutiveFailures(environment.getProperty(
+            prefix + "ejectionConsecutiveFailures", Integer.class,
+            loadBalancerProperties.getEjectionConsecutiveFailures()));
+        loadBalancerProperties.setEjectionSlowCallMillis(environment.getProperty(
+            prefix + "ejectionSlowCallMillis", Long.class,
+            loadBalancerProperties.getEjectionSlowCallMillis()));
+        loadBalancerProperties.setEjectionDurationMillis(environment.getProperty(
+            prefix + "ejectionDurationMillis", Long.class,
+            loadBalancerProperties.getEjectionDurationMillis()));
+        this.loadBalancerProperties = loadBalancerProperties;
+
+        ConcurrencyLimitProperties concurrencyLimitProperties =
+            new ConcurrencyLimitProperties();
+        concurrencyLimitProperties.setAdaptiveConcurrency(environment.getProperty(
+            prefix + "adaptiveConcurrency", Boolean.class, false));
+        concurrencyLimitProperties.setInitialConcurrencyLimit(environment.getProperty(
+            prefix + "initialConcurrencyLimit", Integer.class,
+            concurrencyLimitProperties.getInitialConcurrencyLimit()));
+        concurrencyLimitProperties.setMinConcurrencyLimit(environment.getProperty(
+            prefix + "minConcurrencyLimit", Integer.class,
+            concurrencyLimitProperties.getMinConcurrencyLimit()));
+        concurrencyLimitProperties.setMaxConcurrencyLimit(environment.getProperty(
+            prefix + "maxConcurrencyLimit", Integer.class,
+            concurrencyLimitProperties.getMaxConcurrencyLimit()));
+        this.concurrencyLimitProperties = concurrencyLimitProperties;
+        this.threadPoolProperties = readThreadPool(environment, prefix, commandConfigKey);
+        this.warmConnections = environment.getProperty(prefix + "warmConnections",
+            Integer.class, 0);
+        this.hedgeDelayMillis = environment.getProperty(prefix + "hedgeDelayMillis", Long.class);
+        this.hedgeDelayPercentile = environment.getProperty(prefix + "hedgeDelayPercentile",
+            Double.class);
+        if (hedgeDelayPercentile != null
+            && (hedgeDelayPercentile <= 0 || hedgeDelayPercentile >= 100)) {
+            throw new FeignConfigurationException(
+                "hedgeDelayPercentile必须在0到100之间：" + hedgeDelayPercentile + ", key: "
+                    + commandConfigKey);
+        }
+        this.hedgeBudgetPercent = environment.getProperty(prefix + "hedgeBudgetPercent",
+            Integer.class, 10);
+        this.retryMaxAttempts = environment.getProperty(prefix + "retryMaxAttempts",
+            Integer.class, 1);
+        this.retryBackoffMillis = environment.getProperty(prefix + "retryBackoffMillis",
+            Long.class, 50L);
+        this.retryMaxBackoffMillis = environment.getProperty(prefix + "retryMaxBackoffMillis",
+            Long.class, 1000L);
+        this.retryBudgetPercent = environment.getProperty(prefix + "retryBudgetPercent",
+            Integer.class, 20);
+        this.retryableStatuses = readStatuses(environment, prefix + "retryableStatuses",
+            "429,503");
+        this.phaseTiming = environment.getProperty(prefix + "phaseTiming", Boolean.class,
+            false);
+        this.slowCallMillis = environment.getProperty(prefix + "slowCallMillis", Long.class);
+        this.slowCallLogIntervalMillis = environment.getProperty(
+            prefix + "slowCallLogIntervalMillis", Long.class, 1000L);
+        this.errorBodyMaxBytes = environment.getProperty(prefix + "errorBodyMaxBytes",
+            Integer.class, FeignErrorDecoder.DEFAULT_MAX_BODY_BYTES);
+        this.errorBodySkipStatuses = readStatuses(environment,
+            prefix + "errorBodySkipStatuses", null);
+    }
+
+    private static ThreadPoolProperties readThreadPool(PropertyResolver environment,
+        String prefix, String commandConfigKey) {
+        ThreadPoolProperties threadPool = new ThreadPoolProperties();
+        threadPool.setThreadPoolPerMethod(environment.getProperty(
+            prefix + "threadPoolPerMethod", Boolean.class, false));
+        threadPool.setThreadPoolAutoSize(environment.getProperty(
+            prefix + "threadPoolAutoSize", Boolean.class, false));
+        threadPool.setMinThreadPoolSize(environment.getProperty(
+            prefix + "minThreadPoolSize", Integer.class, threadPool.getMinThreadPoolSize()));
+        threadPool.setMaxThreadPoolSize(environment.getProperty(
+            prefix + "maxThreadPoolSize", Integer.class, threadPool.getMaxThreadPoolSize()));
+        threadPool.setThreadPoolMaxQueueSize(environment.getProperty(
+            prefix + "threadPoolMaxQueueSize", Integer.class,
+            threadPool.getThreadPoolMaxQueueSize()));
+        threadPool.setThreadPoolTargetUtilization(environment.getProperty(
+            prefix + "threadPoolTargetUtilization", Integer.class,
+            threadPool.getThreadPoolTargetUtilization()));
+        threadPool.setThreadPoolResizeIntervalMillis(environment.getProperty(
+            prefix + "threadPoolResizeIntervalMillis", Long.class,
+            threadPool.getThreadPoolResizeIntervalMillis()));
+        if (threadPool.getMinThreadPoolSize() < 1
+            || threadPool.getMaxThreadPoolSize() < threadPool.getMinThreadPoolSize()) {
+            throw new FeignConfigurationException("线程池大小需要满足0 < minThreadPoolSize <= "
+                + "maxThreadPoolSize, key: " + commandConfigKey);
+        }
+        if (threadPool.getThreadPoolTargetUtilization() <= 0
+            || threadPool.getThreadPoolTargetUtilization() > 100) {
+            throw new FeignConfigurationException("threadPoolTargetUtilization必须在1到100之间："
+                + threadPool.getThreadPoolTargetUtilization() + ", key: " + commandConfigKey);
+        }
+        if (threadPool.getThreadPoolResizeIntervalMillis() <= 0) {
+            throw new FeignConfigurationException("threadPoolResizeIntervalMillis必须大于0："
+                + threadPool.getThreadPoolResizeIntervalMillis() + ", key: " + commandConfigKey);
+        }
+        return threadPool;
+    }
+
+    /**
+     * 读取状态码列表，没有配置时使用defaultValue(逗号分隔).
+     */
+    private static Set<Integer> readStatuses(PropertyResolver environment, String key,
+        String defaultValue) {
+        List<String> values = readList(environment, key);
+        if (values.isEmpty() && !environment.containsProperty(key) && defaultValue != null) {
+            values = Arrays.asList(defaultValue.split(","));
+        }
+        Set<Integer> statuses = new HashSet<>();
+        for (String status : values) {
+            if (!StringUtils.isNumeric(status)) {
+                throw new FeignConfigurationException("错误的状态码：" + status + ", key: " + key);
+            }
+            statuses.add(Integer.valueOf(status));
+        }
+        return Collections.unmodifiableSet(statuses);
+    }
+
+    /**
+     * urls等列表配置支持逗号分隔的字符串和yml的列表(urls[0]、urls[1]...)两种写法.
+     */
+    private static List<String> readList(PropertyResolver environment, String key) {
+        List<String> items = new ArrayList<>();
+        String value = environment.getProperty(key);
+        if (StringUtils.isNotBlank(value)) {
+            for (String item : value.split(",")) {
+                if (StringUtils.isNotBlank(item)) {
+                    items.add(item.trim());
+                }
+            }
+            return items;
+        }
+        for (int i = 0; environment.containsProperty(key + "[" + i + "]"); i++) {
+            items.add(environment.getProperty(key + "[" + i + "]").trim());
+        }
+        return items;
+    }
+
+    /**
+     * 是否开启对冲请求.
+     */
+    boolean isHedging() {
+        return hedgeDelayMillis != null || hedgeDelayPercentile != null;
+    }
+
+    /**
+     * 连接和读取超时.
+     */
+    Request.Options options() {
+        return new Request.Options(connectTimeout, readTimeout);
+    }
+
+    /**
+     * 类型转换失败时抛出带配置名的FeignConfigurationException，刷新配置时可以整体保留原配置.
+     */
+    private static class CheckedPropertyResolver implements PropertyResolver {
+
+        private final PropertyResolver delegate;
+
+        CheckedPropertyResolver(PropertyResolver delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean containsProperty(String key) {
+            return delegate.containsProperty(key);
+        }
+
+        @Override
+        public String getProperty(String key) {
+            return delegate.getProperty(key);
+        }
+
+        @Override
+        public String getProperty(String key, String defaultValue) {
+            return delegate.getProperty(key, defaultValue);
+        }
+
+        @Override
+        public <T> T getProperty(String key, Class<T> targetType) {
+            try {
+                return delegate.getProperty(key, targetType);
+            } catch (ConversionException | IllegalArgumentException e) {
+                throw invalid(key, e);
+            }
+        }
+
+        @Override
+        public <T> T getProperty(String key, Class<T> targetType, T defaultValue) {
+            try {
+                return delegate.getProperty(key, targetType, defaultValue);
+            } catch (ConversionException | IllegalArgumentException e) {
+                throw invalid(key, e);
+            }
+        }
+
+        @Override
+        @Deprecated
+        public <T> Class<T> getPropertyAsClass(String key, Class<T> targetType) {
+            return delegate.getPropertyAsClass(key, targetType);
+        }
+
+        @Override
+        public String getRequiredProperty(String key) {
+            return delegate.getRequiredProperty(key);
+        }
+
+        @Override
+        public <T> T getRequiredProperty(String key, Class<T> targetType) {
+            return delegate.getRequiredProperty(key, targetType);
+        }
+
+        @Override
+        public String resolvePlaceholders(String text) {
+            return delegate.resolvePlaceholders(text);
+        }
+
+        @Override
+        public String resolveRequiredPlaceholders(String text) {
+            return delegate.resolveRequiredPlaceholders(text);
+        }
+
+        private FeignConfigurationException invalid(String key, RuntimeException e) {
+            return new FeignConfigurationException(
+                "配置格式错误：" + key + "=" + delegate.getProperty(key), e);
+        }
+    }
+}
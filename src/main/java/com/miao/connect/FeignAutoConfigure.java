@@ -1,11 +1,17 @@
 package com.miao.connect;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
 
 /**
@@ -16,6 +22,7 @@ import org.springframework.core.env.Environment;
 @Configuration
 @ConditionalOnClass(FeignFactory.class)
 @EnableConfigurationProperties(HystrixConfigurationProperties.class)
+@AutoConfigureAfter(name = "io.micrometer.spring.autoconfigure.MetricsAutoConfiguration")
 public class FeignAutoConfigure {
 
     @Autowired
@@ -25,8 +32,49 @@ public class FeignAutoConfigure {
 
     @Bean
     @ConditionalOnMissingBean
-    public FeignFactory feignFactory() {
-        return new FeignFactory(environment, hystrixConfigurationProperties);
+    public FeignMetrics feignMetrics() {
+        return new SimpleFeignMetrics();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public FeignFactory feignFactory(FeignMetrics feignMetrics) {
+        return new FeignFactory(environment, hystrixConfigurationProperties, feignMetrics);
+    }
+
+    /**
+     * 启动时预热所有配置了的Connector.method.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "feign.eagerInit", name = "enabled", havingValue = "true")
+    public ConnectorWarmer connectorWarmer(FeignFactory feignFactory, BeanFactory beanFactory) {
+        return new ConnectorWarmer(feignFactory, (ConfigurableEnvironment) environment,
+            beanFactory);
+    }
+
+    /**
+     * 有spring cloud时，配置变化后刷新已经创建的Connector的超时、url和hystrix配置.
+     */
+    @Bean
+    @ConditionalOnClass(name = FeignConfigRefresher.ENVIRONMENT_CHANGE_EVENT)
+    @ConditionalOnProperty(prefix = "feign.refresh", name = "enabled", matchIfMissing = true)
+    public FeignConfigRefresher feignConfigRefresher(FeignFactory feignFactory) {
+        return new FeignConfigRefresher(feignFactory);
+    }
+
+    /**
+     * 有micrometer的MeterRegistry时，指标注册到MeterRegistry.
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    static class MicrometerMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public FeignMetrics micrometerFeignMetrics(MeterRegistry meterRegistry) {
+            return new MicrometerFeignMetrics(meterRegistry);
+        }
     }
 
 }
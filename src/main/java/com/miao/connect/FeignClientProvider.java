@@ -0,0 +1,291 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Client.Default;
+import feign.httpclient.ApacheHttpClient;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 按endpoint创建并缓存底层的http client.
+ * 默认为每个Connector.method创建一个带连接池的Apache HttpClient，配置client: default时退回HttpURLConnection，
+ * client: h2或h2c时使用基于OkHttp的HTTP/2 client.
+ *
+ * @author Ryan
+ */
+public class FeignClientProvider implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeignClientProvider.class);
+
+    public static final String CLIENT_POOLED = "pooled";
+    public static final String CLIENT_DEFAULT = "default";
+    public static final String CLIENT_H2 = "h2";
+    public static final String CLIENT_H2C = "h2c";
+
+    /**
+     * 和原来一样，不校验https的hostname.
+     */
+    private static final Default NO_SSL_VERIFY_CLIENT = new Default(null, (ssl, sslSession) -> true);
+
+    private final Map<String, PooledClient> pooledClients = new ConcurrentHashMap<>();
+    private final Map<String, PooledAsyncClient> asyncClients = new ConcurrentHashMap<>();
+    private final Map<String, Http2Client> http2Clients = new ConcurrentHashMap<>();
+
+    /**
+     * 获取commandConfigKey对应的client，连接池类型的client在同一个key下只会创建一次.
+     *
+     * @param commandConfigKey Connector.method
+     * @param clientType pooled、default、h2或h2c
+     * @param pool 连接池配置
+     */
+    public Client getClient(String commandConfigKey, String clientType, PoolProperties pool) {
+        if (CLIENT_DEFAULT.equalsIgnoreCase(clientType)) {
+            return NO_SSL_VERIFY_CLIENT;
+        }
+        if (CLIENT_H2.equalsIgnoreCase(clientType) || CLIENT_H2C.equalsIgnoreCase(clientType)) {
+            if (!ClassUtils.isPresent("okhttp3.OkHttpClient", getClass().getClassLoader())) {
+                throw new FeignConfigurationException(
+                    "client: " + clientType + "需要引入com.squareup.okhttp3:okhttp, key: "
+                        + commandConfigKey);
+            }
+            boolean priorKnowledge = CLIENT_H2C.equalsIgnoreCase(clientType);
+            return http2Clients.computeIfAbsent(commandConfigKey,
+                k -> new Http2Client(priorKnowledge, pool));
+        }
+        if (!CLIENT_POOLED.equalsIgnoreCase(clientType)) {
+            throw new FeignConfigurationException(
+                "不支持的client类型：" + clientType + ", key: " + commandConfigKey);
+        }
+        return pooledClients.computeIfAbsent(commandConfigKey, k -> new PooledClient(pool)).client;
+    }
+
+    /**
+     * 获取commandConfigKey对应的非阻塞client，用于返回CompletableFuture的方法，同一个key下只会创建一次.
+     *
+     * @param commandConfigKey Connector.method
+     * @param pool 连接池配置
+     */
+    public CloseableHttpAsyncClient getAsyncClient(String commandConfigKey, PoolProperties pool) {
+        return asyncClients.computeIfAbsent(commandConfigKey, k -> new PooledAsyncClient(pool))
+            .httpClient;
+    }
+
+    /**
+     * 给commandConfigKey对应的连接池的每个url预先建立连接，包括DNS解析、TCP连接和TLS握手.
+     * 每个url最多建立maxConnectionsPerRoute个，建立失败只记录日志. 需要先调用getClient创建连接池.
+     *
+     * @param connections 每个url建立的连接数
+     * @return 成功建立的连接数
+     */
+    public int warmUp(String commandConfigKey, List<String> urls, int connections,
+        int connectTimeoutMillis) {
+        PooledClient pooledClient = pooledClients.get(commandConfigKey);
+        if (pooledClient == null) {
+            return 0;
+        }
+        PoolingHttpClientConnectionManager connectionManager = pooledClient.connectionManager;
+        int warmed = 0;
+        for (String url : urls) {
+            HttpRoute route = route(url);
+            int count = Math.min(connections, connectionManager.getMaxPerRoute(route));
+            //同时占用所有连接后再一起归还，否则建立的总是同一个连接
+            List<HttpClientConnection> opened = new ArrayList<>();
+            try {
+                for (int i = 0; i < count; i++) {
+                    HttpClientConnection connection = connectionManager.requestConnection(route,
+                        null).get(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                    opened.add(connection);
+                    if (!connection.isOpen()) {
+                        HttpClientContext context = HttpClientContext.create();
+                        connectionManager.connect(connection, route, connectTimeoutMillis,
+                            context);
+                        connectionManager.routeComplete(connection, route, context);
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.warn("预热连接失败：{}, url: {}", commandConfigKey, url, e);
+            } finally {
+                for (HttpClientConnection connection : opened) {
+                    if (connection.isOpen()) {
+                        warmed++;
+                    }
+                    connectionManager.releaseConnection(connection, null,
+                        pooledClient.keepAliveMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        return warmed;
+    }
+
+    /**
+     * 和HttpClient的DefaultRoutePlanner一样补全默认端口，预热的连接才能被请求复用.
+     */
+    private static HttpRoute route(String url) {
+        URI uri = URI.create(url);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : secure ? 443 : 80;
+        return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+    }
+
+    /**
+     * 各个endpoint连接池的当前状态，key为Connector.method，非阻塞client的key为Connector.method#async，
+     * HTTP/2 client的key为Connector.method#h2.
+     */
+    public Map<String, PoolStats> getPoolStats() {
+        Map<String, PoolStats> stats = new TreeMap<>();
+        for (Entry<String, PooledClient> entry : pooledClients.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().connectionManager.getTotalStats());
+        }
+        for (Entry<String, PooledAsyncClient> entry : asyncClients.entrySet()) {
+            stats.put(entry.getKey() + "#async",
+                entry.getValue().connectionManager.getTotalStats());
+        }
+        for (Entry<String, Http2Client> entry : http2Clients.entrySet()) {
+            stats.put(entry.getKey() + "#h2", entry.getValue().poolStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        for (Entry<String, PooledClient> entry : pooledClients.entrySet()) {
+            try {
+                entry.getValue().httpClient.close();
+            } catch (IOException e) {
+                LOGGER.warn("关闭连接池失败：{}", entry.getKey(), e);
+            }
+        }
+        pooledClients.clear();
+        for (Entry<String, PooledAsyncClient> entry : asyncClients.entrySet()) {
+            try {
+                entry.getValue().httpClient.close();
+            } catch (IOException e) {
+                LOGGER.warn("关闭连接池失败：{}#async", entry.getKey(), e);
+            }
+        }
+        asyncClients.clear();
+        for (Http2Client client : http2Clients.values()) {
+            client.close();
+        }
+        http2Clients.clear();
+    }
+
+    private static long keepAlive(HttpResponse response, HttpContext context,
+        long keepAliveMillis) {
+        long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+            .getKeepAliveDuration(response, context);
+        return duration > 0 ? Math.min(duration, keepAliveMillis) : keepAliveMillis;
+    }
+
+    private static class PooledClient {
+
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final CloseableHttpClient httpClient;
+        private final Client client;
+        private final long keepAliveMillis;
+
+        PooledClient(PoolProperties pool) {
+            Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder
+                .<ConnectionSocketFactory>create()
+                .register("http", ConnectionTimings.plainSocketFactory())
+                .register("https", ConnectionTimings.sslSocketFactory(SSLContexts.createDefault(),
+                    NoopHostnameVerifier.INSTANCE))
+                .build();
+            this.connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry,
+                ConnectionTimings.dnsResolver());
+            connectionManager.setMaxTotal(pool.getMaxConnections());
+            connectionManager.setDefaultMaxPerRoute(pool.getMaxConnectionsPerRoute());
+
+            this.keepAliveMillis = pool.getKeepAliveMillis();
+            this.httpClient = HttpClients.custom()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setRequestExecutor(ConnectionTimings.requestExecutor())
+                .setKeepAliveStrategy(
+                    (response, context) -> keepAlive(response, context, keepAliveMillis))
+                .evictExpiredConnections()
+                .evictIdleConnections(pool.getIdleTimeoutMillis(), TimeUnit.MILLISECONDS)
+                //重试交给feign的Retryer，压缩和cookie保持和HttpURLConnection一致
+                .disableAutomaticRetries()
+                .disableContentCompression()
+                .disableCookieManagement()
+                .build();
+            this.client = new ApacheHttpClient(httpClient);
+        }
+    }
+
+    /**
+     * 基于NIO的Apache HttpAsyncClient，少量IO线程处理所有连接，请求不占用调用线程.
+     */
+    private static class PooledAsyncClient {
+
+        private final PoolingNHttpClientConnectionManager connectionManager;
+        private final CloseableHttpAsyncClient httpClient;
+
+        PooledAsyncClient(PoolProperties pool) {
+            Registry<SchemeIOSessionStrategy> sessionStrategyRegistry = RegistryBuilder
+                .<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", new SSLIOSessionStrategy(SSLContexts.createDefault(),
+                    NoopHostnameVerifier.INSTANCE))
+                .build();
+            try {
+                DefaultConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(
+                    IOReactorConfig.custom().setSoKeepAlive(true).build());
+                this.connectionManager = new PoolingNHttpClientConnectionManager(ioReactor,
+                    sessionStrategyRegistry);
+            } catch (IOReactorException e) {
+                throw new UncheckedIOException(e);
+            }
+            connectionManager.setMaxTotal(pool.getMaxConnections());
+            connectionManager.setDefaultMaxPerRoute(pool.getMaxConnectionsPerRoute());
+
+            long keepAliveMillis = pool.getKeepAliveMillis();
+            this.httpClient = HttpAsyncClients.custom()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(
+                    (response, context) -> keepAlive(response, context, keepAliveMillis))
+                .disableCookieManagement()
+                .build();
+            httpClient.start();
+        }
+    }
+}
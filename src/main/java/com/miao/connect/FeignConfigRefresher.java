@@ -0,0 +1,29 @@
+package com.miao.connect;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 收到spring cloud的EnvironmentChangeEvent(如/refresh、配置中心推送)时刷新FeignFactory的配置.
+ * 按类名判断，不依赖spring cloud.
+ *
+ * @author Ryan
+ */
+public class FeignConfigRefresher implements ApplicationListener<ApplicationEvent> {
+
+    static final String ENVIRONMENT_CHANGE_EVENT =
+        "org.springframework.cloud.context.environment.EnvironmentChangeEvent";
+
+    private final FeignFactory feignFactory;
+
+    public FeignConfigRefresher(FeignFactory feignFactory) {
+        this.feignFactory = feignFactory;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (ENVIRONMENT_CHANGE_EVENT.equals(event.getClass().getName())) {
+            feignFactory.refresh();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.miao.connect;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+
+/**
+ * 某一时刻的feign.*配置. hystrixConfig在创建时展开成archaius的key，endpointConfig在每个Connector.method
+ * 第一次用到时绑定成{@link EndpointConfig}并缓存. 配置刷新时由FeignFactory整体替换成新的快照.
+ *
+ * @author Ryan
+ */
+class FeignConfigSnapshot {
+
+    private static final String HYSTRIX_CONFIG = "feign.hystrixConfig";
+
+    private final Environment environment;
+    private final Map<String, Object> hystrixSettings;
+    private final ConcurrentMap<String, EndpointConfig> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * 创建快照.
+     *
+     * @param hystrixConfig HystrixConfigurationProperties绑定的配置，environment中的同名配置优先
+     */
+    FeignConfigSnapshot(Environment environment, Map<String, Object> hystrixConfig) {
+        this.environment = environment;
+        Map<String, Object> hystrixSettings = new LinkedHashMap<>();
+        if (hystrixConfig != null) {
+            read(null, hystrixConfig, hystrixSettings);
+        }
+        if (environment instanceof ConfigurableEnvironment) {
+            readEnvironment((ConfigurableEnvironment) environment, hystrixSettings);
+        }
+        this.hystrixSettings = Collections.unmodifiableMap(hystrixSettings);
+    }
+
+    /**
+     * 获取commandConfigKey的配置，配置不完整时抛出FeignConfigurationException，不会缓存.
+     */
+    EndpointConfig endpoint(String commandConfigKey) {
+        EndpointConfig config = endpoints.get(commandConfigKey);
+        if (config == null) {
+            config = endpoints.computeIfAbsent(commandConfigKey,
+                k -> new EndpointConfig(environment, k));
+        }
+        return config;
+    }
+
+    /**
+     * 展开后的hystrix配置，key为archaius的属性名.
+     */
+    Map<String, Object> getHystrixSettings() {
+        return hystrixSettings;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void read(String prefix, Map<String, Object> map, Map<String, Object> result) {
+        for (Entry<String, Object> entry : map.entrySet()) {
+            String key = entry.getKey();
+            String newPrefix = prefix == null ? key : prefix + "." + key;
+            Object value = entry.getValue();
+            if (value instanceof Map) {
+                read(newPrefix, (Map<String, Object>) value, result);
+            } else {
+                result.put(newPrefix, value);
+            }
+        }
+    }
+
+    /**
+     * 配置刷新时HystrixConfigurationProperties不一定已经重新绑定，直接从environment读取.
+     */
+    private static void readEnvironment(ConfigurableEnvironment environment,
+        Map<String, Object> result) {
+        for (PropertySource<?> propertySource : environment.getPropertySources()) {
+            if (!(propertySource instanceof EnumerablePropertySource)) {
+                continue;
+            }
+            for (String name : ((EnumerablePropertySource<?>) propertySource).getPropertyNames()) {
+                //feign.hystrixConfig.hystrix.command...或者feign.hystrixConfig[hystrix.command...]
+                if (name.length() <= HYSTRIX_CONFIG.length() + 1
+                    || !name.startsWith(HYSTRIX_CONFIG)
+                    || name.charAt(HYSTRIX_CONFIG.length()) != '.'
+                    && name.charAt(HYSTRIX_CONFIG.length()) != '[') {
+                    continue;
+                }
+                String key = name.substring(HYSTRIX_CONFIG.length() + 1).replace("[", "")
+                    .replace("]", "");
+                result.put(key, environment.getProperty(name));
+            }
+        }
+    }
+}
@@ -9,4 +9,8 @@ public class FeignConfigurationException extends RuntimeException {
     public FeignConfigurationException(String message) {
         super(message);
     }
+
+    public FeignConfigurationException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
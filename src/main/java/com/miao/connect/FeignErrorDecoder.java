@@ -1,31 +1,129 @@
 package com.miao.connect;
 
+import com.miao.connect.BufferPool.Buffer;
 import feign.Response;
+import feign.RetryableException;
 import feign.Response.Body;
+import feign.Util;
 import feign.codec.ErrorDecoder;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * Feign请求发生错误的时候处理方案，这里仅仅把错误的body返回，放在FeignErrorException的message里。 feign会把大于200的结果都当做错误.
+ * 最多只读取maxBodyBytes字节，先读到{@link BufferPool}借来的缓冲区，只保留实际读到的字节和字符集，
+ * 用到message时才转换成字符串.
+ * 依赖故障时常常返回很大的html错误页，这时整个读入内存只会让已经变慢的调用更慢.
  *
  * @author Ryan
  */
 public class FeignErrorDecoder implements ErrorDecoder {
 
+    public static final int DEFAULT_MAX_BODY_BYTES = 8192;
+
+    private final LiveEndpoint endpoint;
+    private final boolean retryable;
+    private final int maxBodyBytes;
+    private final Set<Integer> skipBodyStatuses;
+
+    public FeignErrorDecoder() {
+        this(DEFAULT_MAX_BODY_BYTES, Collections.emptySet());
+    }
+
+    /**
+     * 构造器.
+     *
+     * @param maxBodyBytes 最多读取的响应体字节数
+     * @param skipBodyStatuses 这些状态码不读取响应体，message为reason
+     */
+    public FeignErrorDecoder(int maxBodyBytes, Collection<Integer> skipBodyStatuses) {
+        this.endpoint = null;
+        this.retryable = false;
+        this.maxBodyBytes = maxBodyBytes;
+        this.skipBodyStatuses = new HashSet<>(skipBodyStatuses);
+    }
+
+    /**
+     * 每次从endpoint读取当前的errorBodyMaxBytes和errorBodySkipStatuses，配置刷新后立即生效.
+     *
+     * @param retryable 使用BudgetedRetryer时为true，开启重试后retryableStatuses中的状态码包装成RetryableException
+     */
+    FeignErrorDecoder(LiveEndpoint endpoint, boolean retryable) {
+        this.endpoint = endpoint;
+        this.retryable = retryable;
+        this.maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+        this.skipBodyStatuses = Collections.emptySet();
+    }
+
     @Override
     public Exception decode(String methodKey, Response response) {
+        if (endpoint == null) {
+            return read(response, maxBodyBytes, skipBodyStatuses);
+        }
+        EndpointConfig config = endpoint.config();
+        FeignErrorException exception = read(response, config.getErrorBodyMaxBytes(),
+            config.getErrorBodySkipStatuses());
+        if (retryable && config.getRetryMaxAttempts() > 1
+            && config.getRetryableStatuses().contains(response.status())) {
+            return new RetryableException("status " + response.status() + " reading " + methodKey,
+                exception, retryAfter(response));
+        }
+        return exception;
+    }
+
+    private static FeignErrorException read(Response response, int maxBodyBytes,
+        Set<Integer> skipBodyStatuses) {
         int status = response.status();
-        String bodyMsg = response.reason();
         Body body = response.body();
-        if (body != null) {
-            try {
-                bodyMsg = IOUtils.toString(body.asReader());
-            } catch (IOException ignore) {
-                //ignore
+        if (body == null || maxBodyBytes <= 0 || skipBodyStatuses.contains(status)) {
+            return new FeignErrorException(status, response.reason());
+        }
+        Charset charset = MyJacksonDecoder.charset(response.headers());
+        byte[] bytes;
+        boolean truncated;
+        //剩下没读的部分在feign关闭响应时由连接池丢弃，不会转换成字符串
+        Integer length = body.length();
+        int size = length == null ? maxBodyBytes : Math.min(length, maxBodyBytes);
+        try (Buffer buffer = BufferPool.shared().acquire(size)) {
+            InputStream in = body.asInputStream();
+            int read = IOUtils.read(in, buffer.array(), 0, size);
+            if (length != null) {
+                truncated = length > maxBodyBytes;
+            } else {
+                truncated = read == maxBodyBytes && in.read() >= 0;
             }
+            bytes = Arrays.copyOf(buffer.array(), read);
+        } catch (IOException ignore) {
+            return new FeignErrorException(status, response.reason());
         }
+        return new FeignErrorException(status, bytes, charset == null ? Util.UTF_8 : charset,
+            truncated);
+    }
 
-        return new FeignErrorException(status, bodyMsg);
+    /**
+     * Retry-After可以是秒数或者http日期，没有或者格式不对时返回null.
+     */
+    private static Date retryAfter(Response response) {
+        String value = HttpHeaderUtils.first(response.headers(), "Retry-After");
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        if (StringUtils.isNumeric(value)) {
+            return new Date(System.currentTimeMillis()
+                + TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        }
+        long date = HttpDates.parse(value);
+        return date < 0 ? null : new Date(date);
     }
 }
@@ -1,22 +1,51 @@
 package com.miao.connect;
 
+import java.nio.charset.Charset;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 /**
  * 定义Feign回到Error的时候异常.
  * @author Ryan
  */
 @EqualsAndHashCode(callSuper = true)
+@ToString(exclude = {"body", "charset"})
 @Data
 public class FeignErrorException extends RuntimeException {
 
     private int status;
     private String message;
+    /**
+     * 读取到的原始响应体，最多errorBodyMaxBytes字节. 没有读取响应体时为null.
+     */
+    private byte[] body;
+    private Charset charset;
+    /**
+     * 响应体超过errorBodyMaxBytes，只读取了前面一部分.
+     */
+    private boolean truncated;
 
     public FeignErrorException(int status, String message) {
         this.status = status;
         this.message = message;
     }
 
+    /**
+     * 构造器，message在第一次使用时才从body转换.
+     */
+    public FeignErrorException(int status, byte[] body, Charset charset, boolean truncated) {
+        this.status = status;
+        this.body = body;
+        this.charset = charset;
+        this.truncated = truncated;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null && body != null) {
+            message = new String(body, charset);
+        }
+        return message;
+    }
 }
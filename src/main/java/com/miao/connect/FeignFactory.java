@@ -1,10 +1,8 @@
 package com.miao.connect;
 
 import com.netflix.config.ConfigurationManager;
-import com.netflix.hystrix.HystrixCommand;
-import com.netflix.hystrix.HystrixCommandGroupKey;
-import com.netflix.hystrix.HystrixCommandKey;
-import feign.Client.Default;
+import feign.Client;
+import feign.Feign;
 import feign.Logger.Level;
 import feign.Request;
 import feign.RequestInterceptor;
@@ -15,19 +13,31 @@ import feign.codec.ErrorDecoder;
 import feign.codec.StringDecoder;
 import feign.gson.GsonDecoder;
 import feign.gson.GsonEncoder;
+import feign.hystrix.FallbackFactory;
 import feign.hystrix.HystrixFeign;
 import feign.hystrix.SetterFactory;
 import feign.slf4j.Slf4jLogger;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import javax.annotation.PostConstruct;
-import org.apache.commons.lang3.StringUtils;
+import javax.annotation.PreDestroy;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
 
 /**
  * Feign的制造工厂，会用读取配置文件，生成对应的Connector.
@@ -37,65 +47,313 @@ import org.springframework.core.env.Environment;
 public class FeignFactory {
 
     private String a;
-    private static final Map<String, Connector> CONNECTORS = new ConcurrentHashMap<>();
+    public static final String RESILIENCE_HYSTRIX = "hystrix";
+    public static final String RESILIENCE_LIGHTWEIGHT = "lightweight";
     private static final GsonEncoder GSON_ENCODER = new GsonEncoder();
     private static final GsonDecoder GSON_DECODER = new GsonDecoder();
     private static final MyJacksonDecoder JACKSON_DECODER = new MyJacksonDecoder();
     private static final MyJacksonEncoder JACKSON_ENCODER = new MyJacksonEncoder();
     private static final StringDecoder STRING_DECODER = new StringDecoder();
-
-    private static Default noSslVerifyClient = new Default(null, (ssl, sslSession) -> true);
+    private static final FeignErrorDecoder ERROR_DECODER = new FeignErrorDecoder();
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeignFactory.class);
 
     private final Environment environment;
     private final HystrixConfigurationProperties hystrixConfigurationProperties;
+    private final FeignMetrics metrics;
+    private final FeignClientProvider clientProvider = new FeignClientProvider();
+    private final Map<String, ConnectorMeters> meters = new ConcurrentHashMap<>();
+    private final ConnectorRegistry connectors;
+    private final Map<String, LiveEndpoint> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, HedgePolicy> hedgePolicies = new ConcurrentHashMap<>();
+    private final Map<String, BudgetedRetryer> retryers = new ConcurrentHashMap<>();
+    private final Map<String, PhaseTimer> phaseTimers = new ConcurrentHashMap<>();
+    private final Map<String, AdaptiveConcurrencyLimiter> concurrencyLimiters =
+        new ConcurrentHashMap<>();
+    private final ThreadPoolSizer threadPoolSizer;
+    private volatile FeignConfigSnapshot config;
+    private volatile ResponseCache responseCache;
+    private volatile ExecutorService hedgeExecutor;
+    private volatile ExecutorService asyncExecutor;
 
     public FeignFactory(Environment environment,
         HystrixConfigurationProperties hystrixConfigurationProperties) {
+        this(environment, hystrixConfigurationProperties, new SimpleFeignMetrics());
+    }
+
+    /**
+     * 创建工厂.
+     *
+     * @param metrics 指标收集，不需要时可以传FeignMetrics.NOOP
+     */
+    public FeignFactory(Environment environment,
+        HystrixConfigurationProperties hystrixConfigurationProperties, FeignMetrics metrics) {
         this.environment = environment;
         this.hystrixConfigurationProperties = hystrixConfigurationProperties;
+        this.metrics = metrics;
+        this.threadPoolSizer = new ThreadPoolSizer(metrics);
+        BufferPool bufferPool = BufferPool.shared();
+        metrics.gauge(FeignMetrics.BUFFER_POOL_HITS, FeignMetrics.SHARED, bufferPool::hits);
+        metrics.gauge(FeignMetrics.BUFFER_POOL_MISSES, FeignMetrics.SHARED, bufferPool::misses);
+        metrics.gauge(FeignMetrics.BUFFER_POOL_LEASED, FeignMetrics.SHARED, bufferPool::leased);
+        metrics.gauge(FeignMetrics.BUFFER_POOL_LEAKS, FeignMetrics.SHARED, () -> {
+            bufferPool.reportLeaks();
+            return bufferPool.leaks();
+        });
+        this.connectors = new ConnectorRegistry(
+            environment.getProperty("feign.connectorCache.maxSize", Integer.class, 1000),
+            metrics);
+        this.config = new FeignConfigSnapshot(environment,
+            hystrixConfigurationProperties.getHystrixConfig());
     }
 
-    private Map<String, Object> hystrixConf = new HashMap<>();
-
     /**
      * 初始化hystrix配置，读取环境变量.
      */
     @PostConstruct
     public void initHystrixConfiguration() {
-        read(null, hystrixConfigurationProperties.getHystrixConfig());
-        for (Entry<String, Object> conf : hystrixConf.entrySet()) {
+        for (Entry<String, Object> conf : config.getHystrixSettings().entrySet()) {
             ConfigurationManager.getConfigInstance().setProperty(conf.getKey(), conf.getValue());
         }
-
+        QueueWaitConcurrencyStrategy.register();
     }
 
-    private void read(String prefix, Map<String, Object> map) {
-        for (Entry<String, Object> entry : map.entrySet()) {
-            String key = entry.getKey();
-            String newPrefix = prefix == null ? key : prefix + "." + key;
-            Object value = entry.getValue();
-            if (value instanceof LinkedHashMap) {
-                read(newPrefix, (LinkedHashMap) value);
-            } else {
-                hystrixConf.put(newPrefix, value);
+    /**
+     * 重新读取配置. hystrix配置直接更新到archaius，已经创建的Connector下一次请求使用新的超时、url和urls，
+     * 连接池、缓存、resilience等创建时决定结构的配置只对之后新建的Connector生效.
+     * 先校验所有已创建endpoint的新配置，有任何一个不完整或者格式错误时整体保留原来的配置，
+     * archaius和endpoint都不会被修改.
+     *
+     * @return 新配置是否生效
+     */
+    public synchronized boolean refresh() {
+        FeignConfigSnapshot old = this.config;
+        FeignConfigSnapshot snapshot = new FeignConfigSnapshot(environment,
+            hystrixConfigurationProperties.getHystrixConfig());
+        Map<LiveEndpoint, EndpointConfig> updates = new HashMap<>();
+        boolean valid = true;
+        for (Entry<String, LiveEndpoint> entry : endpoints.entrySet()) {
+            try {
+                updates.put(entry.getValue(), snapshot.endpoint(entry.getKey()));
+            } catch (FeignConfigurationException e) {
+                LOGGER.warn("刷新配置失败：{}", entry.getKey(), e);
+                valid = false;
             }
+        }
+        if (!valid) {
+            LOGGER.warn("新配置有错误，保留原配置");
+            return false;
+        }
 
+        AbstractConfiguration configuration = ConfigurationManager.getConfigInstance();
+        for (Entry<String, Object> conf : snapshot.getHystrixSettings().entrySet()) {
+            if (!Objects.equals(conf.getValue(), old.getHystrixSettings().get(conf.getKey()))) {
+                configuration.setProperty(conf.getKey(), conf.getValue());
+            }
+        }
+        for (String key : old.getHystrixSettings().keySet()) {
+            if (!snapshot.getHystrixSettings().containsKey(key)) {
+                configuration.clearProperty(key);
+            }
+        }
+        for (Entry<LiveEndpoint, EndpointConfig> update : updates.entrySet()) {
+            update.getKey().update(update.getValue());
         }
+        this.config = snapshot;
+        return true;
+    }
+
+    /**
+     * 关闭连接池.
+     */
+    @PreDestroy
+    public void destroy() {
+        clientProvider.close();
+        threadPoolSizer.close();
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 各个endpoint连接池的状态，key为Connector.method.
+     */
+    public Map<String, PoolStats> getPoolStats() {
+        return clientProvider.getPoolStats();
+    }
+
+    public FeignMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 当前缓存的Connector数量.
+     */
+    public int getConnectorCount() {
+        return connectors.size();
     }
 
     public Builder builder() {
-        return new Builder(environment);
+        return new Builder(this);
+    }
+
+    private ConnectorMeters meters(String commandConfigKey) {
+        return meters.computeIfAbsent(commandConfigKey, k -> new ConnectorMeters(metrics, k));
+    }
+
+    /**
+     * commandConfigKey当前生效的配置，第一次用到时绑定，配置不完整时抛出FeignConfigurationException.
+     */
+    private LiveEndpoint endpoint(String commandConfigKey) {
+        LiveEndpoint endpoint = endpoints.get(commandConfigKey);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(commandConfigKey,
+                k -> new LiveEndpoint(k, config.endpoint(k), metrics));
+        }
+        return endpoint;
+    }
+
+    private PhaseTimer phaseTimer(String commandConfigKey) {
+        return phaseTimers.computeIfAbsent(commandConfigKey,
+            k -> new PhaseTimer(endpoint(k), metrics, k));
+    }
+
+    private BudgetedRetryer retryer(String commandConfigKey) {
+        return retryers.computeIfAbsent(commandConfigKey,
+            k -> new BudgetedRetryer(endpoint(k), metrics, k));
+    }
+
+    private HedgePolicy hedgePolicy(String commandConfigKey) {
+        return hedgePolicies.computeIfAbsent(commandConfigKey,
+            k -> new HedgePolicy(endpoint(k), metrics, k));
+    }
+
+    /**
+     * 同一个commandConfigKey的connector实例共用一个并发上限，淘汰后重建的connector沿用已经调整过的上限.
+     * 并发限制的配置变了时换一个新的，之前创建的connector继续使用原来的.
+     */
+    private AdaptiveConcurrencyLimiter concurrencyLimiter(String commandConfigKey,
+        ConcurrencyLimitProperties properties) {
+        return concurrencyLimiters.compute(commandConfigKey, (k, limiter) -> {
+            if (limiter == null) {
+                metrics.gauge(FeignMetrics.CONCURRENCY_LIMIT, k,
+                    () -> concurrencyLimiters.get(k).limit());
+            } else if (limiter.properties().equals(properties)) {
+                return limiter;
+            }
+            return new AdaptiveConcurrencyLimiter(properties);
+        });
+    }
+
+    /**
+     * 所有开启对冲的endpoint共用的线程池，第一次用到时创建. 并发已经由hystrix或并发限制约束，这里不再限制线程数.
+     */
+    private ExecutorService hedgeExecutor() {
+        if (hedgeExecutor == null) {
+            synchronized (this) {
+                if (hedgeExecutor == null) {
+                    AtomicInteger threads = new AtomicInteger();
+                    hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable,
+                            "feign-hedge-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return hedgeExecutor;
+    }
+
+    /**
+     * 非阻塞调用解码响应和完成CompletableFuture的线程池，所有endpoint共用，第一次用到时创建.
+     * 调用方的thenXxx回调也在这里执行，不限制线程数，避免回调里的阻塞操作卡住其它响应.
+     */
+    private ExecutorService asyncExecutor() {
+        if (asyncExecutor == null) {
+            synchronized (this) {
+                if (asyncExecutor == null) {
+                    AtomicInteger threads = new AtomicInteger();
+                    asyncExecutor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable,
+                            "feign-async-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return asyncExecutor;
+    }
+
+    /**
+     * 所有开启缓存的endpoint共用的响应缓存，第一次用到时创建.
+     */
+    private ResponseCache responseCache() {
+        if (responseCache == null) {
+            synchronized (this) {
+                if (responseCache == null) {
+                    responseCache = new ResponseCache(
+                        environment.getProperty("feign.responseCache.maxBytes", Long.class,
+                            64L * 1024 * 1024),
+                        environment.getProperty("feign.responseCache.maxEntryBytes", Long.class,
+                            1024L * 1024));
+                }
+            }
+        }
+        return responseCache;
+    }
+
+    /**
+     * protobuf是optional依赖，用到时才加载.
+     */
+    private static final class ProtobufCodecs {
+
+        static final ProtobufEncoder ENCODER = new ProtobufEncoder();
+        static final ProtobufDecoder DECODER = new ProtobufDecoder();
+    }
+
+    /**
+     * 按Content-Type选择json、string和classpath中存在的二进制格式.
+     */
+    private static final class NegotiatingDecoder {
+
+        static final ContentNegotiatingDecoder INSTANCE = create();
+
+        private static ContentNegotiatingDecoder create() {
+            ClassLoader classLoader = FeignFactory.class.getClassLoader();
+            Map<String, Decoder> decoders = new HashMap<>();
+            decoders.put("application/json", JACKSON_DECODER);
+            decoders.put("text/plain", STRING_DECODER);
+            if (ClassUtils.isPresent("com.fasterxml.jackson.dataformat.smile.SmileFactory",
+                classLoader)) {
+                decoders.put(JacksonBinaryCodecs.SMILE_MEDIA_TYPE,
+                    JacksonBinaryCodecs.Smile.DECODER);
+            }
+            if (ClassUtils.isPresent("com.fasterxml.jackson.dataformat.cbor.CBORFactory",
+                classLoader)) {
+                decoders.put(JacksonBinaryCodecs.CBOR_MEDIA_TYPE,
+                    JacksonBinaryCodecs.Cbor.DECODER);
+            }
+            if (ClassUtils.isPresent("com.google.protobuf.MessageLite", classLoader)) {
+                decoders.put(ProtobufEncoder.MEDIA_TYPE, ProtobufCodecs.DECODER);
+                decoders.put("application/protobuf", ProtobufCodecs.DECODER);
+            }
+            return new ContentNegotiatingDecoder(decoders, JACKSON_DECODER);
+        }
     }
 
     public static class Builder {
 
-        private final Environment environment;
+        private final FeignFactory factory;
 
         /**
          * 创建builder.
          */
-        Builder(Environment environment) {
-            this.environment = environment;
+        Builder(FeignFactory factory) {
+            this.factory = factory;
         }
 
         /**
@@ -103,24 +361,18 @@ public class FeignFactory {
          */
         private String connectorMethod = "default";
         private List<RequestInterceptor> requestInterceptors = new ArrayList<>();
-        private SetterFactory setterFactory = (target, method) -> {
-            String groupKey = target.name();
-            String hystrixCommandKey =
-                method.getDeclaringClass().getSimpleName() + "#" + method.getName();
-
-            return HystrixCommand.Setter
-                .withGroupKey(HystrixCommandGroupKey.Factory.asKey(groupKey))
-                .andCommandKey(HystrixCommandKey.Factory.asKey(hystrixCommandKey))
-                ;
-        };
+        /**
+         * 为null时使用{@link HystrixSetterFactory}，按endpointConfig决定是否每个方法一个线程池.
+         */
+        private SetterFactory setterFactory;
         private Encoder encoder = JACKSON_ENCODER;
         private Decoder decoder = JACKSON_DECODER;
         private Retryer retryer = Retryer.NEVER_RETRY;
         private Level logLevel = Level.NONE;
-        private ErrorDecoder errorDecoder = new FeignErrorDecoder();
-        private String url;
-        private Integer readTimeout;
-        private Integer connectTimeout;
+        private ErrorDecoder errorDecoder = ERROR_DECODER;
+        private Client client;
+        private Object fallback;
+        private String targetUrl;
 
         public Builder encoder(Encoder encoder) {
             this.encoder = encoder;
@@ -157,6 +409,54 @@ public class FeignFactory {
             return this;
         }
 
+        /**
+         * Jackson Smile二进制格式，需要引入jackson-dataformat-smile.
+         */
+        public Builder smileEncoder() {
+            this.encoder = JacksonBinaryCodecs.Smile.ENCODER;
+            return this;
+        }
+
+        public Builder smileDecoder() {
+            this.decoder = JacksonBinaryCodecs.Smile.DECODER;
+            return this;
+        }
+
+        /**
+         * CBOR二进制格式，需要引入jackson-dataformat-cbor.
+         */
+        public Builder cborEncoder() {
+            this.encoder = JacksonBinaryCodecs.Cbor.ENCODER;
+            return this;
+        }
+
+        public Builder cborDecoder() {
+            this.decoder = JacksonBinaryCodecs.Cbor.DECODER;
+            return this;
+        }
+
+        /**
+         * Protobuf，请求体和返回值必须是protoc生成的消息类型，需要引入protobuf-java.
+         */
+        public Builder protobufEncoder() {
+            this.encoder = ProtobufCodecs.ENCODER;
+            return this;
+        }
+
+        public Builder protobufDecoder() {
+            this.decoder = ProtobufCodecs.DECODER;
+            return this;
+        }
+
+        /**
+         * 按响应的Content-Type选择解码器：json、text/plain以及classpath中存在的smile、cbor、protobuf，
+         * 其它类型按json解码. 需要服务端返回二进制格式时，在请求上声明Accept.
+         */
+        public Builder negotiatingDecoder() {
+            this.decoder = NegotiatingDecoder.INSTANCE;
+            return this;
+        }
+
         public Builder retryer(Retryer retryer) {
             this.retryer = retryer;
             return this;
@@ -172,6 +472,31 @@ public class FeignFactory {
             return this;
         }
 
+        /**
+         * 覆盖配置中的url和urls，用于运行时才知道地址的场景(如每个租户一个地址)，超时等其它配置仍从配置中读取.
+         */
+        public Builder url(String url) {
+            this.targetUrl = url;
+            return this;
+        }
+
+        /**
+         * 指定底层http client，设置后忽略配置中的client和连接池配置.
+         */
+        public Builder client(Client client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * hystrix失败、超时或熔断时调用的fallback，需要实现Connector接口.
+         * 返回CompletableFuture的方法同样会调用fallback中的对应方法.
+         */
+        public Builder fallback(Object fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
         public Builder setterFactory(SetterFactory setterFactory) {
             this.setterFactory = setterFactory;
             return this;
@@ -199,56 +524,168 @@ public class FeignFactory {
 
 
         /**
-         * 转换是安全的，获取最终的Connector. 会根据connectClass + connectorMethodName来缓存生成的Connector，减少对象创建.
+         * 转换是安全的，获取最终的Connector. 会根据connectorClass、connectorMethod以及builder上的url、编解码器、
+         * 拦截器、retryer等配置来缓存生成的Connector，减少对象创建. 这些配置按equals比较，需要缓存命中时应复用同一个实例.
          */
-        @SuppressWarnings("unchecked")
         public <T extends Connector> T getConnector(Class<T> connectorClass) {
-            //determine configuration key
-            final String commandConfigKey =
-                connectorClass.getSimpleName() + "." + this.connectorMethod;
-
-            return (T) CONNECTORS.computeIfAbsent(commandConfigKey, k -> {
-                this.determineFeignConfiguration(commandConfigKey);
-
-                return HystrixFeign.builder()
-                    .setterFactory(setterFactory)
-                    .client(noSslVerifyClient)
-                    .retryer(retryer)
-                    .logger(new Slf4jLogger())
-                    .logLevel(logLevel)
-                    .errorDecoder(errorDecoder)
-                    .options(new Request.Options(connectTimeout, readTimeout))
-                    .requestInterceptors(requestInterceptors)
-                    .encoder(encoder)
-                    .decoder(decoder)
-                    .target(connectorClass, url);
-            });
+            ConnectorRegistry.Key key = ConnectorRegistry.Key.of(connectorClass, connectorMethod,
+                targetUrl, encoder, decoder, errorDecoder, retryer, logLevel, client, fallback,
+                requestInterceptors.isEmpty() ? Collections.emptyList()
+                    : new ArrayList<>(requestInterceptors), setterFactory);
 
+            return factory.connectors.get(key, connectorClass, connectorMethod,
+                commandConfigKey -> build(connectorClass, commandConfigKey));
         }
 
-        private void determineFeignConfiguration(String commandConfigKey) {
+        private <T extends Connector> T build(Class<T> connectorClass, String commandConfigKey) {
+            LiveEndpoint endpoint = factory.endpoint(commandConfigKey);
+            EndpointConfig config = endpoint.config();
+            String url = targetUrl != null ? targetUrl : config.getUrl();
+            ConnectorMeters meters = factory.meters(commandConfigKey);
+            boolean lightweight = RESILIENCE_LIGHTWEIGHT.equalsIgnoreCase(config.getResilience());
+            PoolProperties pool = config.getPool();
+            Client transport = client != null ? client : factory.clientProvider
+                .getClient(commandConfigKey, config.getClientType(), pool);
+            //HttpURLConnection看到Content-Encoding会自己压缩请求体
+            HttpCompression compression = config.isCompression() ? new HttpCompression(
+                config.getCompressionMinRequestBytes(), !(transport instanceof Client.Default),
+                factory.metrics, commandConfigKey) : null;
+            if (targetUrl == null) {
+                transport = new LoadBalancingClient(transport, url, endpoint);
+            }
+            if (config.isHedging()) {
+                transport = new HedgingClient(transport, factory.hedgePolicy(commandConfigKey),
+                    factory.hedgeExecutor());
+            }
+            if (lightweight) {
+                transport = new TimeLimitedClient(transport);
+            }
+            ConcurrencyLimitProperties concurrencyLimit = config.getConcurrencyLimitProperties();
+            AdaptiveConcurrencyLimiter limiter = concurrencyLimit.isAdaptiveConcurrency()
+                ? factory.concurrencyLimiter(commandConfigKey, concurrencyLimit) : null;
+            if (limiter != null) {
+                //缓存之内，命中缓存不算样本
+                transport = new ConcurrencySamplingClient(transport, limiter);
+            }
+            if (config.isCacheEnabled()) {
+                transport = new CachingClient(transport, factory.responseCache(),
+                    config.getCacheTtlMillis(), factory.metrics, commandConfigKey);
+            }
 
-            String urlKey = "feign.endpointConfig." + commandConfigKey + ".url";
-            String readTimeoutKey =
-                "feign.endpointConfig." + commandConfigKey + ".readTimeoutMillis";
-            String connectTimeoutKey =
-                "feign.endpointConfig." + commandConfigKey + ".connectTimeoutMillis";
+            if (fallback != null && !connectorClass.isInstance(fallback)) {
+                throw new FeignConfigurationException(
+                    "fallback没有实现" + connectorClass.getName() + "：" + fallback);
+            }
+            T fallbackConnector = connectorClass.cast(fallback);
+            FallbackFactory<T> fallbackFactory = fallbackConnector == null ? null
+                : limiter == null ? new FallbackFactory.Default<>(fallbackConnector)
+                    : ConcurrencyLimitingInvocationHandler.fallbackFactory(fallbackConnector,
+                        limiter);
+            Request.Options options = config.options();
+            Decoder instrumentedDecoder = new InstrumentedDecoder(decoder, meters);
+            //没有指定retryer时按endpointConfig重试，retryMaxAttempts为1时和NEVER_RETRY一样
+            Retryer retryer = this.retryer == Retryer.NEVER_RETRY
+                ? factory.retryer(commandConfigKey) : this.retryer;
+            ErrorDecoder errorDecoder = this.errorDecoder == ERROR_DECODER
+                ? new FeignErrorDecoder(endpoint, retryer instanceof BudgetedRetryer)
+                : this.errorDecoder;
+            //非阻塞调用不重试
+            ErrorDecoder asyncErrorDecoder = this.errorDecoder == ERROR_DECODER
+                ? new FeignErrorDecoder(endpoint, false) : this.errorDecoder;
+
+            Feign.Builder feign = lightweight ? Feign.builder()
+                : HystrixFeign.builder().setterFactory(setterFactory != null ? setterFactory
+                    : new HystrixSetterFactory(config.getThreadPoolProperties(),
+                        factory.threadPoolSizer, ownedMethods(connectorClass)));
+            Client instrumented = new InstrumentedClient(new LiveOptionsClient(transport, options,
+                endpoint), meters, factory.phaseTimer(commandConfigKey));
+            Client outer = compression == null ? instrumented
+                : new CompressingClient(instrumented, compression);
+            feign.client(JsonCursor.hasCursorMethods(connectorClass)
+                ? new StreamingClient(outer) : outer)
+                .retryer(retryer)
+                .logger(new Slf4jLogger())
+                .logLevel(logLevel)
+                .errorDecoder(errorDecoder)
+                .options(options)
+                .requestInterceptors(requestInterceptors)
+                .encoder(encoder)
+                .decoder(instrumentedDecoder);
+            T connector;
+            if (lightweight) {
+                connector = ResilientInvocationHandler.wrap(connectorClass,
+                    feign.target(connectorClass, url), fallbackConnector,
+                    config.getResilienceProperties(), factory.metrics, commandConfigKey);
+            } else if (fallbackConnector == null) {
+                connector = feign.target(connectorClass, url);
+            } else {
+                connector = ((HystrixFeign.Builder) feign)
+                    .target(connectorClass, url, fallbackFactory);
+            }
 
-            this.url = environment.getProperty(urlKey);
-            String readTimeout = environment.getProperty(readTimeoutKey);
-            String connectTimeout = environment.getProperty(connectTimeoutKey);
+            boolean async = AsyncInvocationHandler.hasAsyncMethods(connectorClass);
+            if (async) {
+                RequestCapture capture = new RequestCapture(connectorClass, url, encoder,
+                    requestInterceptors);
+                AsyncHttpExecutor executor = new AsyncHttpExecutor(
+                    factory.clientProvider.getAsyncClient(commandConfigKey, pool), meters,
+                    url, targetUrl == null ? endpoint : null, compression, limiter);
+                connector = AsyncInvocationHandler.wrap(connectorClass, connector,
+                    fallbackFactory, capture, executor, endpoint::options,
+                    instrumentedDecoder, asyncErrorDecoder, factory.asyncExecutor(), url,
+                    pool.getMaxConnections());
+            }
+            if (limiter != null) {
+                connector = ConcurrencyLimitingInvocationHandler.wrap(connectorClass,
+                    connector, fallbackConnector, limiter, factory.metrics, commandConfigKey);
+            }
+            if (config.isCoalesce()) {
+                connector = CoalescingInvocationHandler.wrap(connectorClass, connector,
+                    new RequestCapture(connectorClass, url, encoder, Collections.emptyList()),
+                    new ArrayList<>(requestInterceptors), factory.metrics, commandConfigKey);
+            }
+            return CollapsingInvocationHandler.wrap(connectorClass, connector,
+                config.getCollapseWindowMillis(), config.getCollapseMaxBatchSize(),
+                factory.metrics, commandConfigKey);
+        }
 
-            if (StringUtils.isBlank(url)) {
-                throw new FeignConfigurationException("没有配置：" + urlKey);
+        /**
+         * 使用当前endpoint配置的方法：指定了connectorMethod时只有这个方法，default时是没有自己配置的方法.
+         */
+        private Predicate<Method> ownedMethods(Class<?> connectorClass) {
+            if (!"default".equals(connectorMethod)) {
+                String owned = connectorMethod;
+                return method -> method.getName().equals(owned);
             }
-            if (StringUtils.isBlank(readTimeout)) {
-                throw new FeignConfigurationException("没有配置：" + readTimeoutKey);
+            String prefix = "feign.endpointConfig." + connectorClass.getSimpleName() + ".";
+            Environment environment = factory.environment;
+            return method -> !environment.containsProperty(prefix + method.getName() + ".url")
+                && !environment.containsProperty(prefix + method.getName() + ".urls")
+                && !environment.containsProperty(prefix + method.getName() + ".urls[0]");
+        }
+
+        /**
+         * 启动时预热一个endpoint：校验配置，按builder当前的配置创建Connector放进缓存，之后用同样配置的
+         * getConnector直接命中，再按warmConnections预先建立连接. 只有client: pooled的连接池能预先建立连接.
+         *
+         * @return 预先建立的连接数
+         */
+        public int warmUp(Class<? extends Connector> connectorClass) {
+            final String commandConfigKey =
+                connectorClass.getSimpleName() + "." + this.connectorMethod;
+            EndpointConfig config = factory.endpoint(commandConfigKey).config();
+            getConnector(connectorClass);
+            if (client != null || config.getWarmConnections() <= 0) {
+                return 0;
             }
-            if (StringUtils.isBlank(connectTimeout)) {
-                throw new FeignConfigurationException("没有配置：" + connectTimeoutKey);
+            if (!FeignClientProvider.CLIENT_POOLED.equalsIgnoreCase(config.getClientType())) {
+                LOGGER.info("client: {}不支持预先建立连接，忽略warmConnections：{}",
+                    config.getClientType(), commandConfigKey);
+                return 0;
             }
-            this.readTimeout = Integer.parseInt(readTimeout);
-            this.connectTimeout = Integer.parseInt(connectTimeout);
+            return factory.clientProvider.warmUp(commandConfigKey,
+                targetUrl != null ? Collections.singletonList(targetUrl) : config.getUrls(),
+                config.getWarmConnections(), config.getConnectTimeout());
         }
     }
 
@@ -0,0 +1,179 @@
+package com.miao.connect;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Connector的指标收集接口，所有指标都以Connector.method(即endpointConfig的配置key)作为connector标签.
+ * 默认实现为{@link SimpleFeignMetrics}，存在micrometer的MeterRegistry时使用{@link MicrometerFeignMetrics}.
+ * 指标对象在创建Connector时获取并缓存，记录的时候不再查找.
+ *
+ * @author Ryan
+ */
+public interface FeignMetrics {
+
+    /**
+     * 在hystrix线程池队列里等待的时间.
+     */
+    String QUEUE_WAIT = "feign.client.queue.wait";
+    /**
+     * 发出请求到拿到响应头的时间.
+     */
+    String EXCHANGE = "feign.client.exchange";
+    /**
+     * 解码响应体的时间.
+     */
+    String DECODE = "feign.client.decode";
+    /**
+     * 开启phaseTiming时连接池client各阶段的耗时：DNS解析、TCP连接、TLS握手(只在新建连接时记录)、
+     * 开始发送请求到读完响应头、读取响应体时等待网络的时间.
+     */
+    String DNS = "feign.client.dns";
+    String CONNECT = "feign.client.connect";
+    String TLS = "feign.client.tls";
+    String TTFB = "feign.client.ttfb";
+    String BODY_READ = "feign.client.body.read";
+    /**
+     * 按状态码统计的响应数，IOException的outcome为IO_ERROR.
+     */
+    String RESPONSES = "feign.client.responses";
+    String REQUEST_BYTES = "feign.client.request.bytes";
+    String RESPONSE_BYTES = "feign.client.response.bytes";
+    /**
+     * 开启compression时压缩后的大小占原大小的百分比.
+     */
+    String REQUEST_COMPRESSION_RATIO = "feign.client.request.compression.ratio";
+    String RESPONSE_COMPRESSION_RATIO = "feign.client.response.compression.ratio";
+    /**
+     * 压缩请求体的CPU时间.
+     */
+    String COMPRESS = "feign.client.compress";
+    /**
+     * 解压响应体的CPU时间，不包括等待网络数据的时间.
+     */
+    String DECOMPRESS = "feign.client.decompress";
+    /**
+     * 响应缓存，outcome为hit/miss/revalidated/eviction.
+     */
+    String CACHE = "feign.client.cache";
+    /**
+     * 请求合并，outcome为leader(真正发出的请求)/joined(等待共享结果的调用).
+     */
+    String COALESCE = "feign.client.coalesce";
+    /**
+     * 合并后每个批量请求包含的key数，connector标签为Connector.method#单key方法名.
+     */
+    String BATCH_SIZE = "feign.client.batch.size";
+    /**
+     * resilience: lightweight的调用结果，outcome为success/failure/timeout/circuit_open/bulkhead_full/fallback，
+     * connector标签为Connector.method#方法名.
+     */
+    String RESILIENCE = "feign.client.resilience";
+    /**
+     * resilience: lightweight的熔断器状态，0关闭，1打开，2半开.
+     */
+    String CIRCUIT_STATE = "feign.client.circuit.state";
+    /**
+     * 配置了多个urls时节点被剔除的次数，outcome标签为被剔除的url.
+     */
+    String LB_EJECTIONS = "feign.client.lb.ejections";
+    /**
+     * 开启adaptiveConcurrency时的调用数，outcome为accepted/rejected.
+     */
+    String CONCURRENCY_CALLS = "feign.client.concurrency.calls";
+    /**
+     * 开启adaptiveConcurrency时当前的并发上限.
+     */
+    String CONCURRENCY_LIMIT = "feign.client.concurrency.limit";
+    /**
+     * 对冲请求，outcome为sent(发出的对冲请求)/won(对冲请求先拿到响应)/budget_exhausted(预算不足没有发出).
+     */
+    String HEDGE = "feign.client.hedge";
+    /**
+     * 开启retryMaxAttempts时的重试，outcome为retried(重试次数)/budget_exhausted(预算不足放弃)/
+     * deadline_exceeded(剩余超时时间不够放弃).
+     */
+    String RETRY = "feign.client.retry";
+    /**
+     * 开启threadPoolPerMethod或threadPoolAutoSize时hystrix线程池的线程数、活跃线程数和排队数，
+     * connector标签为线程池的key，即Connector#method.
+     */
+    String THREAD_POOL_SIZE = "feign.client.threadpool.size";
+    String THREAD_POOL_ACTIVE = "feign.client.threadpool.active";
+    String THREAD_POOL_QUEUE = "feign.client.threadpool.queue";
+    /**
+     * 编解码和client共用的缓冲池：借出时命中和未命中的次数、开启leakDetection时发现的泄漏数是累计值，
+     * leased为当前借出未归还的数量. connector标签为shared.
+     */
+    String BUFFER_POOL_HITS = "feign.buffer.pool.hits";
+    String BUFFER_POOL_MISSES = "feign.buffer.pool.misses";
+    String BUFFER_POOL_LEASED = "feign.buffer.pool.leased";
+    String BUFFER_POOL_LEAKS = "feign.buffer.pool.leaks";
+    /**
+     * FeignFactory中Connector缓存的命中情况，outcome为hit/miss/eviction.
+     */
+    String CONNECTOR_CACHE = "feign.connector.cache";
+    /**
+     * 正在进行中的请求数.
+     */
+    String IN_FLIGHT = "feign.client.inflight";
+
+    String CONNECTOR_TAG = "connector";
+    String OUTCOME_TAG = "outcome";
+    /**
+     * 不属于某个Connector的指标使用的connector标签.
+     */
+    String SHARED = "shared";
+
+    /**
+     * 不记录任何指标.
+     */
+    FeignMetrics NOOP = new FeignMetrics() {
+        @Override
+        public Timer timer(String name, String connector) {
+            return nanos -> {
+            };
+        }
+
+        @Override
+        public Summary summary(String name, String connector) {
+            return amount -> {
+            };
+        }
+
+        @Override
+        public Counter counter(String name, String connector, String outcome) {
+            return () -> {
+            };
+        }
+
+        @Override
+        public void gauge(String name, String connector, LongSupplier value) {
+        }
+    };
+
+    Timer timer(String name, String connector);
+
+    Summary summary(String name, String connector);
+
+    Counter counter(String name, String connector, String outcome);
+
+    /**
+     * 注册gauge，value会被一直持有.
+     */
+    void gauge(String name, String connector, LongSupplier value);
+
+    interface Timer {
+
+        void record(long nanos);
+    }
+
+    interface Summary {
+
+        void record(long amount);
+    }
+
+    interface Counter {
+
+        void increment();
+    }
+}
@@ -0,0 +1,13 @@
+package com.miao.connect;
+
+/**
+ * resilience: lightweight时熔断打开或者并发数已满，或者超过了自适应并发上限，请求没有发出.
+ *
+ * @author Ryan
+ */
+public class FeignRejectedException extends RuntimeException {
+
+    public FeignRejectedException(String message) {
+        super(message);
+    }
+}
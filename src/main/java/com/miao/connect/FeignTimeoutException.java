@@ -0,0 +1,17 @@
+package com.miao.connect;
+
+/**
+ * resilience: lightweight时，调用超过了timeoutMillis.
+ *
+ * @author Ryan
+ */
+public class FeignTimeoutException extends RuntimeException {
+
+    public FeignTimeoutException(String message) {
+        super(message);
+    }
+
+    public FeignTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,104 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Counter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 一个Connector.method的对冲状态：最近的延迟分布、对冲预算和指标，同一个key下的connector共用.
+ * 延迟和预算比例每次从endpoint读取，配置刷新后立即生效.
+ *
+ * @author Ryan
+ */
+class HedgePolicy {
+
+    /**
+     * 用最近这么多次请求的延迟计算分位数.
+     */
+    private static final int WINDOW = 1024;
+    /**
+     * 每隔这么多个样本重新计算一次分位数，第一次计算前不对冲.
+     */
+    private static final int RECOMPUTE_INTERVAL = 128;
+    /**
+     * 预算最多积攒的令牌数，也就是允许连续对冲的次数.
+     */
+    private static final int MAX_TOKENS = 10;
+
+    final Counter sent;
+    final Counter won;
+    final Counter budgetExhausted;
+
+    private final LiveEndpoint endpoint;
+    private final TokenBucket budget = new TokenBucket(MAX_TOKENS);
+    private final AtomicLongArray latencies = new AtomicLongArray(WINDOW);
+    private final AtomicLong samples = new AtomicLong();
+    private volatile long percentileNanos = -1;
+
+    HedgePolicy(LiveEndpoint endpoint, FeignMetrics metrics, String connector) {
+        this.endpoint = endpoint;
+        this.sent = metrics.counter(FeignMetrics.HEDGE, connector, "sent");
+        this.won = metrics.counter(FeignMetrics.HEDGE, connector, "won");
+        this.budgetExhausted = metrics.counter(FeignMetrics.HEDGE, connector,
+            "budget_exhausted");
+    }
+
+    /**
+     * 发出第一次请求前调用，按hedgeBudgetPercent存入预算.
+     */
+    void onRequest() {
+        budget.deposit(endpoint.config().getHedgeBudgetPercent() / 100.0);
+    }
+
+    /**
+     * 第一次请求等待多久没有响应时发出对冲请求，配置了分位数但样本还不够时返回-1，不对冲.
+     */
+    long delayNanos() {
+        EndpointConfig config = endpoint.config();
+        long fixed = config.getHedgeDelayMillis() == null ? 0
+            : TimeUnit.MILLISECONDS.toNanos(config.getHedgeDelayMillis());
+        if (config.getHedgeDelayPercentile() == null) {
+            return config.getHedgeDelayMillis() == null ? -1 : fixed;
+        }
+        long percentile = percentileNanos;
+        return percentile < 0 ? -1 : Math.max(percentile, fixed);
+    }
+
+    /**
+     * 占用一次对冲的预算.
+     */
+    boolean tryHedge() {
+        if (budget.tryAcquire()) {
+            sent.increment();
+            return true;
+        }
+        budgetExhausted.increment();
+        return false;
+    }
+
+    /**
+     * 记录一次请求拿到响应的耗时.
+     */
+    void record(long nanos) {
+        long count = samples.getAndIncrement() + 1;
+        latencies.set((int) ((count - 1) % WINDOW), nanos);
+        if (count % RECOMPUTE_INTERVAL == 0) {
+            Double percentile = endpoint.config().getHedgeDelayPercentile();
+            if (percentile != null) {
+                percentileNanos = percentile(percentile, (int) Math.min(count, WINDOW));
+            }
+        }
+    }
+
+    private long percentile(double percentile, int size) {
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(size * percentile / 100) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, rank))];
+    }
+}
@@ -0,0 +1,176 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import feign.Util;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对冲请求：GET/HEAD/OPTIONS请求超过延迟还没有响应时再发一次，先拿到响应的胜出，另一个取消.
+ * 两次请求都在executor上执行，调用线程只负责等待，所以放在负载均衡外面，对冲请求一般会选到另一个节点.
+ * 阻塞的client无法中断正在读取的请求，落败的响应到达后立即关闭，连接归还连接池.
+ * 开启phaseTiming时每次请求在executor线程上记录各自的阶段耗时，胜出的那次复制给调用方.
+ *
+ * @author Ryan
+ */
+class HedgingClient implements Client {
+
+    private final Client delegate;
+    private final HedgePolicy policy;
+    private final ExecutorService executor;
+
+    HedgingClient(Client delegate, HedgePolicy policy, ExecutorService executor) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.executor = executor;
+    }
+
+    @Override
+    public Response execute(Request request, Options options) throws IOException {
+        if (!isSafe(request.method())) {
+            return delegate.execute(request, options);
+        }
+        policy.onRequest();
+        long delay = policy.delayNanos();
+        if (delay < 0) {
+            long start = System.nanoTime();
+            Response response = delegate.execute(request, options);
+            policy.record(System.nanoTime() - start);
+            return response;
+        }
+        Race race = new Race(request, options);
+        race.start(false);
+        Response response = race.await(delay);
+        if (response != null) {
+            return response;
+        }
+        if (!race.winner.isDone() && policy.tryHedge()) {
+            race.start(true);
+        }
+        return race.await(-1);
+    }
+
+    /**
+     * 只对冲不会修改服务端状态的请求.
+     */
+    static boolean isSafe(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    private final class Race {
+
+        private final Request request;
+        private final Options options;
+        /**
+         * 调用方的阶段耗时，没有开启phaseTiming时为null.
+         */
+        private final CallTiming timing = CallContext.current().timing;
+        private final CompletableFuture<Response> winner = new CompletableFuture<>();
+        private final List<Future<?>> attempts = new CopyOnWriteArrayList<>();
+        /**
+         * 还没有失败的请求数，全部失败时才把最后一个异常抛给调用方.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        Race(Request request, Options options) {
+            this.request = request;
+            this.options = options;
+        }
+
+        void start(boolean hedge) {
+            pending.incrementAndGet();
+            attempts.add(executor.submit(() -> run(hedge)));
+        }
+
+        private void run(boolean hedge) {
+            long start = System.nanoTime();
+            CallContext context = CallContext.current();
+            CallTiming attemptTiming = timing == null ? null : new CallTiming();
+            context.timing = attemptTiming;
+            Response response;
+            try {
+                response = delegate.execute(request, options);
+            } catch (Throwable e) {
+                if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(e);
+                }
+                return;
+            } finally {
+                context.timing = null;
+            }
+            policy.record(System.nanoTime() - start);
+            boolean won;
+            //先复制阶段耗时再完成，调用方拿到响应时已经是胜出那次的耗时
+            synchronized (this) {
+                won = !winner.isDone();
+                if (won) {
+                    if (attemptTiming != null) {
+                        timing.copyConnectionPhases(attemptTiming);
+                    }
+                    won = winner.complete(response);
+                }
+            }
+            if (!won) {
+                Util.ensureClosed(response.body());
+            } else if (hedge) {
+                policy.won.increment();
+            }
+        }
+
+        /**
+         * 等待先到的响应.
+         *
+         * @param timeoutNanos 小于0时一直等待
+         * @return 超时返回null
+         */
+        Response await(long timeoutNanos) throws IOException {
+            Response response;
+            try {
+                response = timeoutNanos < 0 ? winner.get()
+                    : winner.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            } catch (InterruptedException e) {
+                //一般是hystrix超时，之后到达的响应直接关闭
+                if (!winner.cancel(false) && !winner.isCompletedExceptionally()) {
+                    Util.ensureClosed(winner.join().body());
+                }
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待响应时被中断：" + request.url());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+            cancel();
+            return response;
+        }
+
+        private void cancel() {
+            for (Future<?> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+    }
+}
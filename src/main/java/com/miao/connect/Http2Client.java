@@ -0,0 +1,259 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Request.Options;
+import feign.Response;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * 基于OkHttp的HTTP/2 client. h2通过TLS的ALPN协商HTTP/2，服务端不支持时退回HTTP/1.1；
+ * h2c以prior knowledge方式直接发送明文HTTP/2，只能用于http的url. 同一个节点的并发请求在一个连接上多路复用，
+ * 省掉了HTTP/1.1每个并发请求一个连接的握手开销，每个节点同时进行的请求数不超过maxConcurrentStreams.
+ * 需要引入com.squareup.okhttp3:okhttp 3.14及以上版本，h2需要jdk 8u252以上才支持ALPN.
+ *
+ * @author Ryan
+ */
+class Http2Client implements Client, Closeable {
+
+    private final OkHttpClient httpClient;
+    private final int maxConnections;
+
+    Http2Client(boolean priorKnowledge, PoolProperties pool) {
+        this.maxConnections = pool.getMaxConnections();
+        this.httpClient = new OkHttpClient.Builder()
+            .protocols(priorKnowledge ? Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE)
+                : Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectionPool(new ConnectionPool(pool.getMaxConnections(),
+                pool.getIdleTimeoutMillis(), TimeUnit.MILLISECONDS))
+            //和原来一样，不校验https的hostname
+            .hostnameVerifier((hostname, session) -> true)
+            //重试交给feign的Retryer
+            .retryOnConnectionFailure(false)
+            .addInterceptor(new StreamLimiter(pool.getMaxConcurrentStreams()))
+            .eventListenerFactory(call -> {
+                CallTiming timing = CallContext.current().timing;
+                return timing == null ? EventListener.NONE : new TimingListener(timing);
+            })
+            .build();
+    }
+
+    @Override
+    public Response execute(feign.Request request, Options options) throws IOException {
+        Request.Builder builder = new Request.Builder()
+            .url(request.url())
+            .tag(Options.class, options);
+        MediaType contentType = null;
+        for (Entry<String, Collection<String>> header : request.headers().entrySet()) {
+            String name = header.getKey();
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                builder.addHeader(name, value);
+                if ("Content-Type".equalsIgnoreCase(name)) {
+                    contentType = MediaType.parse(value);
+                }
+            }
+        }
+        byte[] body = request.body();
+        String method = request.method();
+        if (body == null && ("POST".equals(method) || "PUT".equals(method)
+            || "PATCH".equals(method))) {
+            body = new byte[0];
+        }
+        builder.method(method, body == null ? null : RequestBody.create(contentType, body));
+
+        okhttp3.Response response = httpClient.newCall(builder.build()).execute();
+        Map<String, Collection<String>> headers = new LinkedHashMap<>();
+        for (Entry<String, List<String>> header : response.headers().toMultimap().entrySet()) {
+            headers.put(header.getKey(), header.getValue());
+        }
+        ResponseBody responseBody = response.body();
+        long length = responseBody.contentLength();
+        return Response.builder()
+            .status(response.code())
+            .reason(response.message())
+            .headers(headers)
+            .request(request)
+            .body(responseBody.byteStream(),
+                length >= 0 && length <= Integer.MAX_VALUE ? (int) length : null)
+            .build();
+    }
+
+    /**
+     * 连接池状态，正在使用的连接为leased.
+     */
+    PoolStats poolStats() {
+        ConnectionPool pool = httpClient.connectionPool();
+        int idle = pool.idleConnectionCount();
+        return new PoolStats(pool.connectionCount() - idle, 0, idle, maxConnections);
+    }
+
+    @Override
+    public void close() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * 按feign的Options设置这次请求的超时，并限制每个节点同时进行的请求数. 请求占用的stream在关闭响应体时释放，
+     * 等待超过connectTimeoutMillis时抛出IO异常.
+     */
+    private static final class StreamLimiter implements Interceptor {
+
+        private final int maxConcurrentStreams;
+        private final Map<String, Semaphore> streams = new ConcurrentHashMap<>();
+
+        StreamLimiter(int maxConcurrentStreams) {
+            this.maxConcurrentStreams = maxConcurrentStreams;
+        }
+
+        @Override
+        public okhttp3.Response intercept(Chain chain) throws IOException {
+            Options options = chain.request().tag(Options.class);
+            if (options != null) {
+                chain = chain
+                    .withConnectTimeout(options.connectTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .withReadTimeout(options.readTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .withWriteTimeout(options.readTimeoutMillis(), TimeUnit.MILLISECONDS);
+            }
+            HttpUrl url = chain.request().url();
+            String host = url.host() + ":" + url.port();
+            Semaphore semaphore = streams.computeIfAbsent(host,
+                k -> new Semaphore(maxConcurrentStreams));
+            try {
+                if (!semaphore.tryAcquire(chain.connectTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new IOException(
+                        "等待HTTP/2 stream超时：" + host + ", maxConcurrentStreams: "
+                            + maxConcurrentStreams);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待HTTP/2 stream时被中断：" + host);
+            }
+            okhttp3.Response response;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (IOException | RuntimeException | Error e) {
+                semaphore.release();
+                throw e;
+            }
+            ResponseBody body = response.body();
+            AtomicBoolean released = new AtomicBoolean();
+            BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (released.compareAndSet(false, true)) {
+                            semaphore.release();
+                        }
+                    }
+                }
+            });
+            return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), source))
+                .build();
+        }
+    }
+
+    /**
+     * 同步调用的事件在调用线程上触发，把DNS、连接、TLS握手和首字节时间记录到CallTiming.
+     * 多路复用时只有建立连接的那次请求有前三个阶段.
+     */
+    private static final class TimingListener extends EventListener {
+
+        private final CallTiming timing;
+        private long dnsStart;
+        private long connectStart;
+        private long tlsStart;
+        private long tlsNanos;
+        private long requestStart;
+
+        TimingListener(CallTiming timing) {
+            this.timing = timing;
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+            timing.dnsNanos += System.nanoTime() - dnsStart;
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = System.nanoTime();
+            tlsNanos = 0;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsNanos = System.nanoTime() - tlsStart;
+            timing.tlsNanos += tlsNanos;
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy,
+            Protocol protocol) {
+            timing.connectNanos += System.nanoTime() - connectStart - tlsNanos;
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress address, Proxy proxy,
+            Protocol protocol, IOException ioe) {
+            timing.connectNanos += System.nanoTime() - connectStart - tlsNanos;
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, okhttp3.Response response) {
+            timing.ttfbNanos += System.nanoTime() - requestStart;
+        }
+    }
+}
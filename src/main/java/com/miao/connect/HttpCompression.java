@@ -0,0 +1,307 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Summary;
+import com.miao.connect.FeignMetrics.Timer;
+import feign.Request;
+import feign.Response;
+import feign.Response.Body;
+import feign.Util;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 请求和响应体的gzip/deflate压缩. 请求带上Accept-Encoding，超过minRequestBytes的请求体用gzip压缩，
+ * 压缩的响应体在读取时边读边解压，不会先整个读入内存，解码器拿到的就是解压后的流.
+ *
+ * @author Ryan
+ */
+class HttpCompression {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final Collection<String> ACCEPTED =
+        Collections.singletonList(GZIP + ", " + DEFLATE);
+    private static final Collection<String> GZIP_ENCODING = Collections.singletonList(GZIP);
+
+    private final int minRequestBytes;
+    private final boolean compressRequestBody;
+    private final Summary requestRatio;
+    private final Summary responseRatio;
+    private final Timer compressTime;
+    private final Timer decompressTime;
+
+    /**
+     * 构造器.
+     *
+     * @param minRequestBytes 请求体不小于这个大小才压缩
+     * @param compressRequestBody false时只加Content-Encoding，由client自己压缩(HttpURLConnection)
+     */
+    HttpCompression(int minRequestBytes, boolean compressRequestBody, FeignMetrics metrics,
+        String connector) {
+        this.minRequestBytes = minRequestBytes;
+        this.compressRequestBody = compressRequestBody;
+        this.requestRatio = metrics.summary(FeignMetrics.REQUEST_COMPRESSION_RATIO, connector);
+        this.responseRatio = metrics.summary(FeignMetrics.RESPONSE_COMPRESSION_RATIO, connector);
+        this.compressTime = metrics.timer(FeignMetrics.COMPRESS, connector);
+        this.decompressTime = metrics.timer(FeignMetrics.DECOMPRESS, connector);
+    }
+
+    /**
+     * 加上Accept-Encoding，请求体足够大并且没有指定Content-Encoding时压缩.
+     */
+    Request compress(Request request) throws IOException {
+        Map<String, Collection<String>> headers = request.headers();
+        boolean accept = HttpHeaderUtils.first(headers, ACCEPT_ENCODING) == null;
+        byte[] body = request.body();
+        boolean compress = body != null && body.length >= minRequestBytes
+            && HttpHeaderUtils.first(headers, CONTENT_ENCODING) == null;
+        if (!accept && !compress) {
+            return request;
+        }
+        Map<String, Collection<String>> newHeaders = new LinkedHashMap<>(headers);
+        if (accept) {
+            newHeaders.put(ACCEPT_ENCODING, ACCEPTED);
+        }
+        if (!compress) {
+            return Request.create(request.method(), request.url(), newHeaders, body,
+                request.charset());
+        }
+        newHeaders.put(CONTENT_ENCODING, GZIP_ENCODING);
+        if (!compressRequestBody) {
+            return Request.create(request.method(), request.url(), newHeaders, body,
+                request.charset());
+        }
+        long start = System.nanoTime();
+        PooledOutputStream out = new PooledOutputStream(BufferPool.shared(), body.length / 4 + 64);
+        byte[] compressed;
+        try {
+            //请求体一般是json，最快的压缩级别已经能压到原来的1/5左右，更高的级别多花几倍CPU收益很小
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            }) {
+                gzip.write(body);
+            }
+            compressed = out.toByteArray();
+        } finally {
+            out.release();
+        }
+        compressTime.record(System.nanoTime() - start);
+        requestRatio.record(ratio(compressed.length, body.length));
+        for (Entry<String, Collection<String>> header : headers.entrySet()) {
+            if (Util.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                newHeaders.remove(header.getKey());
+            }
+        }
+        return Request.create(request.method(), request.url(), newHeaders, compressed, null);
+    }
+
+    /**
+     * 响应是gzip或deflate压缩时换成读取时解压的body，并去掉Content-Encoding和Content-Length.
+     */
+    Response decompress(Response response) {
+        if (response.body() == null) {
+            return response;
+        }
+        String encoding = HttpHeaderUtils.first(response.headers(), CONTENT_ENCODING);
+        if (encoding == null) {
+            return response;
+        }
+        encoding = encoding.trim().toLowerCase();
+        if (!GZIP.equals(encoding) && !"x-gzip".equals(encoding) && !DEFLATE.equals(encoding)) {
+            return response;
+        }
+        Map<String, Collection<String>> headers = new LinkedHashMap<>();
+        for (Entry<String, Collection<String>> header : response.headers().entrySet()) {
+            if (!CONTENT_ENCODING.equalsIgnoreCase(header.getKey())
+                && !Util.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                headers.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+        }
+        return response.toBuilder()
+            .headers(headers)
+            .body(new DecompressingBody(response.body(), !DEFLATE.equals(encoding),
+                MyJacksonDecoder.charset(headers)))
+            .build();
+    }
+
+    /**
+     * 压缩后大小占原大小的百分比.
+     */
+    private static long ratio(long compressed, long original) {
+        return original == 0 ? 100 : compressed * 100 / original;
+    }
+
+    /**
+     * 读取时解压的响应体，读完或关闭时记录压缩率和解压耗时. 解压耗时不包括等待网络数据的时间.
+     */
+    private class DecompressingBody implements Body {
+
+        private final Body delegate;
+        private final boolean gzip;
+        private final Charset charset;
+        private InputStream stream;
+        private long compressedBytes;
+        private long decompressedBytes;
+        private long readNanos;
+        private long totalNanos;
+        private boolean recorded;
+
+        DecompressingBody(Body delegate, boolean gzip, Charset charset) {
+            this.delegate = delegate;
+            this.gzip = gzip;
+            this.charset = charset;
+        }
+
+        @Override
+        public Integer length() {
+            return null;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public InputStream asInputStream() throws IOException {
+            if (stream == null) {
+                InputStream raw = new FilterInputStream(delegate.asInputStream()) {
+                    @Override
+                    public int read() throws IOException {
+                        long start = System.nanoTime();
+                        int b = super.read();
+                        readNanos += System.nanoTime() - start;
+                        if (b >= 0) {
+                            compressedBytes++;
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        long start = System.nanoTime();
+                        int n = super.read(b, off, len);
+                        readNanos += System.nanoTime() - start;
+                        if (n > 0) {
+                            compressedBytes += n;
+                        }
+                        return n;
+                    }
+                };
+                //创建时会读取gzip头，一起计入总耗时
+                long start = System.nanoTime();
+                InputStream inflater = inflate(raw);
+                totalNanos += System.nanoTime() - start;
+                stream = new FilterInputStream(inflater) {
+                    @Override
+                    public int read() throws IOException {
+                        long start = System.nanoTime();
+                        int b = super.read();
+                        totalNanos += System.nanoTime() - start;
+                        if (b < 0) {
+                            record();
+                        } else {
+                            decompressedBytes++;
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        long start = System.nanoTime();
+                        int n = super.read(b, off, len);
+                        totalNanos += System.nanoTime() - start;
+                        if (n < 0) {
+                            record();
+                        } else {
+                            decompressedBytes += n;
+                        }
+                        return n;
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        record();
+                        super.close();
+                    }
+                };
+            }
+            return stream;
+        }
+
+        /**
+         * deflate按规范是zlib格式，但也有服务端直接发raw deflate，根据前两个字节判断.
+         */
+        private InputStream inflate(InputStream raw) throws IOException {
+            if (gzip) {
+                return new GZIPInputStream(raw, 8192);
+            }
+            PushbackInputStream pushback = new PushbackInputStream(raw, 2);
+            byte[] head = new byte[2];
+            int n = pushback.read(head, 0, 2);
+            if (n > 0) {
+                pushback.unread(head, 0, n);
+            }
+            boolean zlib = n == 2 && (head[0] & 0x0f) == 8
+                && (((head[0] & 0xff) << 8) | (head[1] & 0xff)) % 31 == 0;
+            //自己传入的Inflater不会在close时释放，要手动end，否则一直占用native内存到被回收
+            Inflater inflater = new Inflater(!zlib);
+            return new InflaterInputStream(pushback, inflater, 8192) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public Reader asReader() throws IOException {
+            return new InputStreamReader(asInputStream(), charset == null ? Util.UTF_8 : charset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            record();
+            //调用方可能只关闭body，解压流也要关闭，释放Inflater
+            try {
+                if (stream != null) {
+                    stream.close();
+                }
+            } finally {
+                delegate.close();
+            }
+        }
+
+        private void record() {
+            if (!recorded && decompressedBytes > 0) {
+                recorded = true;
+                responseRatio.record(ratio(compressedBytes, decompressedBytes));
+                decompressTime.record(Math.max(0, totalNanos - readNanos));
+            }
+        }
+    }
+}
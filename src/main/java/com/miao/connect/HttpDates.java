@@ -0,0 +1,31 @@
+package com.miao.connect;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * 解析http header中的日期(RFC 1123).
+ *
+ * @author Ryan
+ */
+final class HttpDates {
+
+    private HttpDates() {
+    }
+
+    /**
+     * 解析为毫秒时间戳，为空或格式不对时返回-1.
+     */
+    static long parse(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                .toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
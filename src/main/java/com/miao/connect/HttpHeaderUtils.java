@@ -0,0 +1,58 @@
+package com.miao.connect;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * http header的读取和修改，header名大小写不敏感.
+ *
+ * @author Ryan
+ */
+final class HttpHeaderUtils {
+
+    private HttpHeaderUtils() {
+    }
+
+    /**
+     * header的所有值，没有时返回空集合.
+     */
+    static Collection<String> values(Map<String, Collection<String>> headers, String name) {
+        if (headers == null) {
+            return Collections.emptyList();
+        }
+        for (Entry<String, Collection<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null) {
+                return header.getValue();
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * header的第一个值，没有时返回null.
+     */
+    static String first(Map<String, Collection<String>> headers, String name) {
+        Collection<String> values = values(headers, name);
+        return values.isEmpty() ? null : values.iterator().next();
+    }
+
+    /**
+     * 复制headers并替换指定header，value为null时删除.
+     */
+    static Map<String, Collection<String>> with(Map<String, Collection<String>> headers,
+        String name, String value) {
+        Map<String, Collection<String>> copy = new LinkedHashMap<>();
+        for (Entry<String, Collection<String>> header : headers.entrySet()) {
+            if (!name.equalsIgnoreCase(header.getKey())) {
+                copy.put(header.getKey(), header.getValue());
+            }
+        }
+        if (value != null) {
+            copy.put(name, Collections.singletonList(value));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,53 @@
+package com.miao.connect;
+
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import feign.Target;
+import feign.hystrix.SetterFactory;
+import java.lang.reflect.Method;
+import java.util.function.Predicate;
+
+/**
+ * 默认的SetterFactory：groupKey为target的name(即url)，commandKey为Connector#method.
+ * 开启threadPoolPerMethod或threadPoolAutoSize时threadPoolKey和commandKey相同，每个方法一个线程池，
+ * 否则按hystrix的默认行为，同一个groupKey的方法共用一个线程池.
+ * feign对connector的每个方法都会调用create，只有这个endpoint负责的方法按它的配置注册线程池，
+ * 其他方法的线程池由它们自己的endpoint注册.
+ *
+ * @author Ryan
+ */
+class HystrixSetterFactory implements SetterFactory {
+
+    private final ThreadPoolProperties properties;
+    private final ThreadPoolSizer sizer;
+    private final Predicate<Method> owned;
+
+    /**
+     * 构造器.
+     *
+     * @param owned 使用properties的方法，即构建的endpoint对应的方法
+     */
+    HystrixSetterFactory(ThreadPoolProperties properties, ThreadPoolSizer sizer,
+        Predicate<Method> owned) {
+        this.properties = properties;
+        this.sizer = sizer;
+        this.owned = owned;
+    }
+
+    @Override
+    public HystrixCommand.Setter create(Target<?> target, Method method) {
+        String commandKey = method.getDeclaringClass().getSimpleName() + "#" + method.getName();
+        HystrixCommand.Setter setter = HystrixCommand.Setter
+            .withGroupKey(HystrixCommandGroupKey.Factory.asKey(target.name()))
+            .andCommandKey(HystrixCommandKey.Factory.asKey(commandKey));
+        if (!properties.isThreadPoolPerMethod() && !properties.isThreadPoolAutoSize()) {
+            return setter;
+        }
+        if (owned.test(method)) {
+            sizer.register(commandKey, properties);
+        }
+        return setter.andThreadPoolKey(HystrixThreadPoolKey.Factory.asKey(commandKey));
+    }
+}
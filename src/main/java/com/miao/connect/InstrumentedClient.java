@@ -0,0 +1,163 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import feign.Response.Body;
+import feign.Util;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * 记录排队时间、请求耗时、状态码、请求响应字节数和进行中请求数. 同时把请求的HTTP方法放到CallContext，供Retryer判断是否幂等.
+ * 开启phaseTiming时记录分阶段耗时，响应体关闭时结束.
+ *
+ * @author Ryan
+ */
+class InstrumentedClient implements Client {
+
+    private final Client delegate;
+    private final ConnectorMeters meters;
+    private final PhaseTimer phaseTimer;
+
+    InstrumentedClient(Client delegate, ConnectorMeters meters, PhaseTimer phaseTimer) {
+        this.delegate = delegate;
+        this.meters = meters;
+        this.phaseTimer = phaseTimer;
+    }
+
+    @Override
+    public Response execute(Request request, Options options) throws IOException {
+        CallContext context = CallContext.current();
+        context.requestMethod = request.method();
+        long queueWait = context.takeQueueWaitNanos();
+        if (queueWait >= 0) {
+            meters.queueWait.record(queueWait);
+        }
+        if (request.body() != null) {
+            meters.requestBytes.record(request.body().length);
+        }
+        CallTiming timing = phaseTimer.start();
+        if (timing != null) {
+            timing.queueWaitNanos = queueWait;
+            context.timing = timing;
+        }
+
+        Response response;
+        meters.inFlight.increment();
+        long start = System.nanoTime();
+        try {
+            response = delegate.execute(request, options);
+        } catch (IOException | RuntimeException e) {
+            meters.exchange.record(System.nanoTime() - start);
+            meters.ioErrors.increment();
+            if (timing != null) {
+                phaseTimer.finish(timing, request, -1);
+            }
+            throw e;
+        } finally {
+            meters.inFlight.decrement();
+            context.timing = null;
+        }
+        long end = System.nanoTime();
+        meters.exchange.record(end - start);
+        meters.response(response.status()).increment();
+
+        Body body = response.body();
+        if (body == null) {
+            meters.responseBytes.record(0);
+        } else if (body.length() != null) {
+            meters.responseBytes.record(body.length());
+        } else {
+            body = new CountingBody(body, meters);
+            response = response.toBuilder().body(body).build();
+        }
+        if (timing != null) {
+            timing.responseAtNanos = end;
+            response = response.toBuilder()
+                .body(phaseTimer.track(body, timing, request, response.status())).build();
+        }
+        return response;
+    }
+
+    /**
+     * 长度未知(chunked)的响应体，在读完或关闭时记录实际读取的字节数.
+     */
+    private static class CountingBody implements Body {
+
+        private final Body delegate;
+        private final ConnectorMeters meters;
+        private long count;
+        private boolean recorded;
+
+        CountingBody(Body delegate, ConnectorMeters meters) {
+            this.delegate = delegate;
+            this.meters = meters;
+        }
+
+        @Override
+        public Integer length() {
+            return null;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public InputStream asInputStream() throws IOException {
+            return new FilterInputStream(delegate.asInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b < 0) {
+                        record();
+                    } else {
+                        count++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n < 0) {
+                        record();
+                    } else {
+                        count += n;
+                    }
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    record();
+                    super.close();
+                }
+            };
+        }
+
+        @Override
+        public Reader asReader() throws IOException {
+            return new InputStreamReader(asInputStream(), Util.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            record();
+            delegate.close();
+        }
+
+        private void record() {
+            if (!recorded) {
+                recorded = true;
+                meters.responseBytes.record(count);
+            }
+        }
+    }
+}
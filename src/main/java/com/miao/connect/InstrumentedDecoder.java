@@ -0,0 +1,43 @@
+package com.miao.connect;
+
+import feign.FeignException;
+import feign.Response;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Type;
+
+/**
+ * 记录解码耗时. hystrix超时后会中断执行线程并丢弃之后的结果，这时解码出的游标等结果没有人关闭，
+ * 在这里关闭并抛出InterruptedIOException.
+ *
+ * @author Ryan
+ */
+class InstrumentedDecoder implements Decoder {
+
+    private final Decoder delegate;
+    private final ConnectorMeters meters;
+
+    InstrumentedDecoder(Decoder delegate, ConnectorMeters meters) {
+        this.delegate = delegate;
+        this.meters = meters;
+    }
+
+    @Override
+    public Object decode(Response response, Type type)
+        throws IOException, DecodeException, FeignException {
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = delegate.decode(response, type);
+        } finally {
+            meters.decode.record(System.nanoTime() - start);
+        }
+        if (result instanceof AutoCloseable && Thread.currentThread().isInterrupted()) {
+            JsonCursor.closeDiscarded(result);
+            throw new InterruptedIOException("调用已经中断，丢弃解码结果");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,57 @@
+package com.miao.connect;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Jackson的Smile和CBOR二进制编解码，和json使用相同的ObjectMapper配置，同一个对象可以直接换格式.
+ * jackson-dataformat-smile和jackson-dataformat-cbor是optional依赖，用到哪种格式时才加载对应的类.
+ *
+ * @author Ryan
+ */
+final class JacksonBinaryCodecs {
+
+    static final String SMILE_MEDIA_TYPE = "application/x-jackson-smile";
+    static final String CBOR_MEDIA_TYPE = "application/cbor";
+
+    private JacksonBinaryCodecs() {
+    }
+
+    /**
+     * 和MyJacksonEncoder、MyJacksonDecoder默认构造器一致的配置.
+     */
+    private static ObjectMapper mapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.setSerializationInclusion(Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper;
+    }
+
+    static final class Smile {
+
+        private static final ObjectMapper MAPPER = mapper(new SmileFactory());
+        static final MyJacksonEncoder ENCODER = new MyJacksonEncoder(MAPPER, SMILE_MEDIA_TYPE);
+        static final MyJacksonDecoder DECODER = new MyJacksonDecoder(MAPPER);
+
+        private Smile() {
+        }
+    }
+
+    static final class Cbor {
+
+        private static final ObjectMapper MAPPER = mapper(new CBORFactory());
+        static final MyJacksonEncoder ENCODER = new MyJacksonEncoder(MAPPER, CBOR_MEDIA_TYPE);
+        static final MyJacksonDecoder DECODER = new MyJacksonDecoder(MAPPER);
+
+        private Cbor() {
+        }
+    }
+}
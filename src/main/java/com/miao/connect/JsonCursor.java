@@ -0,0 +1,181 @@
+package com.miao.connect;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import feign.codec.DecodeException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * 用jackson的JsonParser逐个读取顶层数组的元素，json、smile、cbor都适用.
+ *
+ * @author Ryan
+ */
+class JsonCursor<T> implements Cursor<T> {
+
+    private final JsonParser parser;
+    private final ObjectReader reader;
+    private final Closeable body;
+    private boolean fetched;
+    private boolean closed;
+
+    /**
+     * 构造器.
+     *
+     * @param parser 已经读到START_ARRAY
+     * @param reader 元素类型的ObjectReader
+     * @param body 关闭时一起关闭，释放连接
+     */
+    JsonCursor(JsonParser parser, ObjectReader reader, Closeable body) {
+        this.parser = parser;
+        this.reader = reader;
+        this.body = body;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!fetched) {
+            JsonToken token;
+            try {
+                token = parser.nextToken();
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+            if (token == null || token == JsonToken.END_ARRAY) {
+                close();
+                return false;
+            }
+            fetched = true;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+        try {
+            return reader.readValue(parser);
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            parser.close();
+            body.close();
+        } catch (IOException ignore) {
+            //已经不再读取，关闭失败不影响结果
+        }
+    }
+
+    /**
+     * 返回类型为Iterator、Stream或Cursor时返回元素类型，否则返回null.
+     */
+    static Type elementType(Type type) {
+        if (!(type instanceof ParameterizedType)) {
+            return null;
+        }
+        ParameterizedType parameterized = (ParameterizedType) type;
+        Type raw = parameterized.getRawType();
+        if (raw != Iterator.class && raw != Stream.class && raw != Cursor.class) {
+            return null;
+        }
+        return parameterized.getActualTypeArguments()[0];
+    }
+
+    /**
+     * connectorClass中是否有返回Iterator、Stream或Cursor的方法.
+     */
+    static boolean hasCursorMethods(Class<?> connectorClass) {
+        for (Method method : connectorClass.getMethods()) {
+            if (!method.isDefault() && elementType(method.getGenericReturnType()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按返回类型转换游标.
+     */
+    static Object adapt(Cursor<?> cursor, Type type) {
+        return ((ParameterizedType) type).getRawType() == Stream.class ? cursor.stream() : cursor;
+    }
+
+    /**
+     * 超时等原因丢弃调用结果时，关闭占着连接的结果(游标、Stream、Response等).
+     */
+    static void closeDiscarded(Object result) {
+        if (result instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) result).close();
+            } catch (Exception e) {
+                //结果已经丢弃，关闭失败只能忽略
+            }
+        }
+    }
+
+    /**
+     * 404或空body时返回的空游标.
+     */
+    static Object empty(Type type) {
+        Iterator<Object> empty = Collections.emptyIterator();
+        return adapt(new Cursor<Object>() {
+            @Override
+            public boolean hasNext() {
+                return false;
+            }
+
+            @Override
+            public Object next() {
+                return empty.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        }, type);
+    }
+
+    /**
+     * 读到顶层数组的开始，不是数组时抛出DecodeException.
+     *
+     * @return 空body时返回false
+     */
+    static boolean startArray(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null || token == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new DecodeException("返回Iterator、Stream或Cursor时响应体需要是数组：" + token);
+        }
+        return true;
+    }
+}
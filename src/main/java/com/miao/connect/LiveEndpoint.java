@@ -0,0 +1,53 @@
+package com.miao.connect;
+
+import feign.Request.Options;
+
+/**
+ * 一个Connector.method当前生效的配置，FeignFactory中同一个key的所有Connector共用.
+ * 配置刷新时更新，请求时读取最新的超时和url，已经创建的Connector不需要重新创建.
+ *
+ * @author Ryan
+ */
+class LiveEndpoint {
+
+    private final String commandConfigKey;
+    private final FeignMetrics metrics;
+    private volatile EndpointConfig config;
+    private volatile Options options;
+    /**
+     * 只有一个url时为null.
+     */
+    private volatile LoadBalancer loadBalancer;
+
+    LiveEndpoint(String commandConfigKey, EndpointConfig config, FeignMetrics metrics) {
+        this.commandConfigKey = commandConfigKey;
+        this.metrics = metrics;
+        update(config);
+    }
+
+    /**
+     * 换成新的配置，url列表和负载均衡配置都没变时保留原来的节点统计.
+     */
+    synchronized void update(EndpointConfig config) {
+        EndpointConfig old = this.config;
+        if (old == null || !old.getUrls().equals(config.getUrls())
+            || !old.getLoadBalancerProperties().equals(config.getLoadBalancerProperties())) {
+            this.loadBalancer = config.getUrls().size() > 1 ? new LoadBalancer(config.getUrls(),
+                config.getLoadBalancerProperties(), metrics, commandConfigKey) : null;
+        }
+        this.options = config.options();
+        this.config = config;
+    }
+
+    EndpointConfig config() {
+        return config;
+    }
+
+    Options options() {
+        return options;
+    }
+
+    LoadBalancer loadBalancer() {
+        return loadBalancer;
+    }
+}
@@ -0,0 +1,35 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import java.io.IOException;
+
+/**
+ * 把创建Connector时的超时换成endpoint当前配置的超时，方法参数中传入的Options不替换.
+ *
+ * @author Ryan
+ */
+class LiveOptionsClient implements Client {
+
+    private final Client delegate;
+    private final Options initial;
+    private final LiveEndpoint endpoint;
+
+    /**
+     * 构造器.
+     *
+     * @param initial 传给Feign.Builder的Options，请求用的是这个实例时才替换
+     */
+    LiveOptionsClient(Client delegate, Options initial, LiveEndpoint endpoint) {
+        this.delegate = delegate;
+        this.initial = initial;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public Response execute(Request request, Options options) throws IOException {
+        return delegate.execute(request, options == initial ? endpoint.options() : options);
+    }
+}
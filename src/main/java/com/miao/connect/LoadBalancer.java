@@ -0,0 +1,208 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Counter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个endpoint的多个url之间的客户端负载均衡，不依赖服务发现.
+ * 节点连续失败或响应过慢时被剔除一段时间，到期后放一个请求试探，成功后恢复.
+ * 所有节点都被剔除时不再剔除，避免整个endpoint不可用.
+ *
+ * @author Ryan
+ */
+class LoadBalancer {
+
+    static final String ROUND_ROBIN = "roundRobin";
+    static final String LEAST_OUTSTANDING = "leastOutstanding";
+    static final String POWER_OF_TWO = "powerOfTwo";
+
+    private static final int MAX_EJECTION_MULTIPLIER = 10;
+    /**
+     * 响应时间EWMA的衰减系数.
+     */
+    private static final double EWMA_ALPHA = 0.2;
+    /**
+     * 没有新样本时EWMA按该时间常数衰减，避免偶尔一次慢响应让节点再也选不中.
+     */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final List<Server> servers;
+    private final String strategy;
+    private final int ejectionConsecutiveFailures;
+    private final long ejectionSlowCallNanos;
+    private final long ejectionDurationNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    LoadBalancer(List<String> urls, LoadBalancerProperties properties, FeignMetrics metrics,
+        String connector) {
+        this.strategy = properties.getLoadBalancer();
+        if (!ROUND_ROBIN.equals(strategy) && !LEAST_OUTSTANDING.equals(strategy)
+            && !POWER_OF_TWO.equals(strategy)) {
+            throw new FeignConfigurationException(
+                "不支持的loadBalancer：" + strategy + ", key: " + connector);
+        }
+        this.ejectionConsecutiveFailures = properties.getEjectionConsecutiveFailures();
+        this.ejectionSlowCallNanos = TimeUnit.MILLISECONDS
+            .toNanos(properties.getEjectionSlowCallMillis());
+        this.ejectionDurationNanos = TimeUnit.MILLISECONDS
+            .toNanos(properties.getEjectionDurationMillis());
+        List<Server> servers = new ArrayList<>();
+        for (String url : urls) {
+            servers.add(new Server(url, metrics.counter(FeignMetrics.LB_EJECTIONS, connector,
+                url)));
+        }
+        this.servers = servers;
+    }
+
+    /**
+     * 选择一个节点，剔除到期的节点优先用来试探.
+     */
+    Server choose() {
+        long now = System.nanoTime();
+        List<Server> candidates = new ArrayList<>(servers.size());
+        for (Server server : servers) {
+            long ejectedUntil = server.ejectedUntil;
+            if (ejectedUntil == 0) {
+                candidates.add(server);
+            } else if (now - ejectedUntil >= 0 && server.probing.compareAndSet(false, true)) {
+                return server;
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates = servers;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        switch (strategy) {
+            case LEAST_OUTSTANDING:
+                return leastOutstanding(candidates);
+            case POWER_OF_TWO:
+                return powerOfTwo(candidates);
+            default:
+                return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+        }
+    }
+
+    /**
+     * 从随机位置开始找进行中请求最少的节点，避免并列时都选中第一个.
+     */
+    private static Server leastOutstanding(List<Server> candidates) {
+        int size = candidates.size();
+        int offset = ThreadLocalRandom.current().nextInt(size);
+        Server best = null;
+        for (int i = 0; i < size; i++) {
+            Server server = candidates.get((offset + i) % size);
+            if (best == null || server.outstanding.get() < best.outstanding.get()) {
+                best = server;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 随机选两个节点，取响应时间EWMA乘以(进行中请求数+1)较小的.
+     */
+    private static Server powerOfTwo(List<Server> candidates) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int size = candidates.size();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Server a = candidates.get(first);
+        Server b = candidates.get(second);
+        long now = System.nanoTime();
+        return a.load(now) <= b.load(now) ? a : b;
+    }
+
+    /**
+     * 记录一次请求的结果.
+     *
+     * @param failed IO异常或5xx
+     */
+    void record(Server server, long elapsedNanos, boolean failed) {
+        server.updateLatency(elapsedNanos);
+        boolean failure = failed
+            || ejectionSlowCallNanos > 0 && elapsedNanos >= ejectionSlowCallNanos;
+        if (server.probing.get()) {
+            if (failure) {
+                eject(server);
+            } else {
+                server.consecutiveFailures.set(0);
+                server.ejections.set(0);
+                server.ejectedUntil = 0;
+            }
+            server.probing.set(false);
+            return;
+        }
+        if (!failure) {
+            server.consecutiveFailures.set(0);
+        } else if (server.consecutiveFailures.incrementAndGet() >= ejectionConsecutiveFailures
+            && server.ejectedUntil == 0 && healthyCount() > 1) {
+            eject(server);
+        }
+    }
+
+    private void eject(Server server) {
+        int ejections = Math.min(server.ejections.incrementAndGet(), MAX_EJECTION_MULTIPLIER);
+        long until = System.nanoTime() + ejectionDurationNanos * ejections;
+        server.ejectedUntil = until == 0 ? 1 : until;
+        server.consecutiveFailures.set(0);
+        server.ejectionCounter.increment();
+    }
+
+    private int healthyCount() {
+        int count = 0;
+        for (Server server : servers) {
+            if (server.ejectedUntil == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 一个url的运行状态.
+     */
+    static final class Server {
+
+        final String url;
+        final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicInteger ejections = new AtomicInteger();
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private final Counter ejectionCounter;
+        /**
+         * 剔除到期的System.nanoTime，0表示正常.
+         */
+        private volatile long ejectedUntil;
+        private volatile double latencyEwma;
+        private volatile long sampledAt;
+
+        Server(String url, Counter ejectionCounter) {
+            this.url = url;
+            this.ejectionCounter = ejectionCounter;
+        }
+
+        private double load(long now) {
+            double latency = latencyEwma * Math.exp(-(now - sampledAt) / DECAY_NANOS);
+            return (latency + 1) * (outstanding.get() + 1);
+        }
+
+        /**
+         * 并发更新时可能丢失个别样本，对EWMA没有影响.
+         */
+        private void updateLatency(long nanos) {
+            double current = latencyEwma;
+            latencyEwma = current == 0 ? nanos : current + EWMA_ALPHA * (nanos - current);
+            sampledAt = System.nanoTime();
+        }
+    }
+}
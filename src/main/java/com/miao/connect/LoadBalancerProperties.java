@@ -0,0 +1,30 @@
+package com.miao.connect;
+
+import lombok.Data;
+
+/**
+ * 配置了多个urls时的负载均衡和异常节点剔除配置，对应feign.endpointConfig.[Connector].[method]下的同名配置.
+ *
+ * @author Ryan
+ */
+@Data
+public class LoadBalancerProperties {
+
+    /**
+     * roundRobin、leastOutstanding或powerOfTwo.
+     */
+    private String loadBalancer = LoadBalancer.ROUND_ROBIN;
+    /**
+     * 连续失败(IO异常或5xx)多少次后剔除节点.
+     */
+    private int ejectionConsecutiveFailures = 5;
+    /**
+     * 响应时间超过该值也算一次失败，0为不按响应时间剔除.
+     */
+    private long ejectionSlowCallMillis;
+    /**
+     * 剔除的时长，到期后放一个请求试探，成功则恢复. 多次被剔除时按次数成倍增加，最多10倍.
+     */
+    private long ejectionDurationMillis = 30000;
+
+}
@@ -0,0 +1,66 @@
+package com.miao.connect;
+
+import com.miao.connect.LoadBalancer.Server;
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import java.io.IOException;
+
+/**
+ * 把请求url中target的地址替换成负载均衡选出的节点，只有一个url时替换成endpoint当前配置的url.
+ *
+ * @author Ryan
+ */
+class LoadBalancingClient implements Client {
+
+    private final Client delegate;
+    private final String targetUrl;
+    private final LiveEndpoint endpoint;
+
+    /**
+     * 构造器.
+     *
+     * @param targetUrl feign target的url，请求的url都以它开头
+     */
+    LoadBalancingClient(Client delegate, String targetUrl, LiveEndpoint endpoint) {
+        this.delegate = delegate;
+        this.targetUrl = targetUrl;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public Response execute(Request request, Options options) throws IOException {
+        LoadBalancer loadBalancer = endpoint.loadBalancer();
+        if (loadBalancer == null) {
+            return delegate.execute(route(request, targetUrl, endpoint.config().getUrl()),
+                options);
+        }
+        Server server = loadBalancer.choose();
+        Request routed = route(request, targetUrl, server.url);
+        server.outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            Response response = delegate.execute(routed, options);
+            loadBalancer.record(server, System.nanoTime() - start, response.status() >= 500);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            loadBalancer.record(server, System.nanoTime() - start, true);
+            throw e;
+        } finally {
+            server.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * 替换url的前缀，target的url就是选中的url时原样返回.
+     */
+    static Request route(Request request, String targetUrl, String url) {
+        String requestUrl = request.url();
+        if (url.equals(targetUrl) || !requestUrl.startsWith(targetUrl)) {
+            return request;
+        }
+        return Request.create(request.method(), url + requestUrl.substring(targetUrl.length()),
+            request.headers(), request.body(), request.charset());
+    }
+}
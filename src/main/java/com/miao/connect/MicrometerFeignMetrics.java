@@ -0,0 +1,70 @@
+package com.miao.connect;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * 把指标注册到micrometer的MeterRegistry，timer和summary都会发布百分位直方图.
+ *
+ * @author Ryan
+ */
+public class MicrometerFeignMetrics implements FeignMetrics {
+
+    private final MeterRegistry registry;
+    /**
+     * micrometer对gauge的对象是弱引用，这里需要持有. 同名的gauge只注册一次，
+     * Connector被淘汰后重新创建时替换成新的值.
+     */
+    private final Map<String, AtomicReference<LongSupplier>> gauges = new ConcurrentHashMap<>();
+
+    public MicrometerFeignMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Timer timer(String name, String connector) {
+        io.micrometer.core.instrument.Timer timer = io.micrometer.core.instrument.Timer
+            .builder(name)
+            .tag(CONNECTOR_TAG, connector)
+            .publishPercentileHistogram()
+            .register(registry);
+        return nanos -> timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Summary summary(String name, String connector) {
+        DistributionSummary summary = DistributionSummary
+            .builder(name)
+            .tag(CONNECTOR_TAG, connector)
+            .publishPercentileHistogram()
+            .register(registry);
+        return summary::record;
+    }
+
+    @Override
+    public Counter counter(String name, String connector, String outcome) {
+        io.micrometer.core.instrument.Counter counter = io.micrometer.core.instrument.Counter
+            .builder(name)
+            .tag(CONNECTOR_TAG, connector)
+            .tag(OUTCOME_TAG, outcome)
+            .register(registry);
+        return counter::increment;
+    }
+
+    @Override
+    public void gauge(String name, String connector, LongSupplier value) {
+        gauges.computeIfAbsent(name + "|" + connector, k -> {
+            AtomicReference<LongSupplier> holder = new AtomicReference<>(value);
+            Gauge.builder(name, holder, h -> h.get().getAsLong())
+                .tag(CONNECTOR_TAG, connector)
+                .register(registry);
+            return holder;
+        }).set(value);
+    }
+}
@@ -1,77 +1,203 @@
 package com.miao.connect;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import feign.Response;
 import feign.Util;
 import feign.codec.Decoder;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Jackson自定义，用来支持LocalDate.
+ * 默认直接从响应的InputStream按字节解析，并按Type缓存ObjectReader. 按字符解析时用{@link PooledReader}转换，
+ * 字符集取Content-Type中的charset，没有时为UTF-8.
+ * 返回类型为Iterator、Stream或{@link Cursor}时，从打开的响应流中逐个解析数组元素.
  *
  * @author Ryan
  */
 public class MyJacksonDecoder implements Decoder {
 
     private final ObjectMapper mapper;
+    /**
+     * true直接解析字节流，false走原来的Reader方式.
+     */
+    private final boolean byteStream;
+    /**
+     * smile、cbor等二进制格式，总是按字节解析.
+     */
+    private final boolean binary;
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
 
     public MyJacksonDecoder() {
         this(Collections.emptyList());
     }
 
+    public MyJacksonDecoder(Iterable<Module> modules) {
+        this(modules, true);
+    }
+
     /**
      * 构造器.
+     *
+     * @param modules 额外注册的jackson module
+     * @param byteStream 是否直接从InputStream解析
      */
-    public MyJacksonDecoder(Iterable<Module> modules) {
+    public MyJacksonDecoder(Iterable<Module> modules, boolean byteStream) {
         this.mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
+        mapper.registerModules(modules);
         mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         mapper.setSerializationInclusion(Include.NON_NULL)
             .configure(SerializationFeature.INDENT_OUTPUT, true)
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.byteStream = byteStream;
+        this.binary = false;
     }
 
     public MyJacksonDecoder(ObjectMapper mapper) {
+        this(mapper, true);
+    }
+
+    public MyJacksonDecoder(ObjectMapper mapper, boolean byteStream) {
         this.mapper = mapper;
+        this.byteStream = byteStream;
+        this.binary = mapper.getFactory().canHandleBinaryNatively();
     }
 
     @Override
     public Object decode(Response response, Type type) throws IOException {
+        Type elementType = JsonCursor.elementType(type);
+        if (elementType != null) {
+            return decodeCursor(response, type, elementType);
+        }
         if (response.status() == 404) {
             return Util.emptyValueOf(type);
         } else if (response.body() == null) {
             return null;
-        } else {
-            Reader reader = response.body().asReader();
-            if (!((Reader) reader).markSupported()) {
-                reader = new BufferedReader((Reader) reader, 1);
+        }
+
+        ObjectReader reader = readerFor(type);
+        try {
+            if (binary || byteStream && isUnicode(response)) {
+                return decodeBytes(response, reader);
+            }
+            return decodeChars(response, reader);
+        } catch (RuntimeJsonMappingException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else {
+                throw e;
             }
+        }
+    }
 
-            try {
-                ((Reader) reader).mark(1);
-                if (((Reader) reader).read() == -1) {
-                    return null;
-                } else {
-                    ((Reader) reader).reset();
-                    return this.mapper.readValue((Reader) reader, this.mapper.constructType(type));
+    private ObjectReader readerFor(Type type) {
+        return readers.computeIfAbsent(type, t -> mapper.readerFor(mapper.constructType(t)));
+    }
+
+    /**
+     * jackson会自己识别UTF-8/16/32编码，空body时nextToken直接返回null.
+     */
+    private Object decodeBytes(Response response, ObjectReader reader) throws IOException {
+        JsonParser parser = reader.getFactory().createParser(response.body().asInputStream());
+        try {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            return reader.readValue(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * 返回Iterator、Stream或Cursor时逐个解析数组元素，响应体交给游标关闭.
+     */
+    private Object decodeCursor(Response response, Type type, Type elementType)
+        throws IOException {
+        if (response.status() == 404 || response.body() == null) {
+            return JsonCursor.empty(type);
+        }
+        ObjectReader reader = readerFor(elementType);
+        JsonParser parser = binary || byteStream && isUnicode(response)
+            ? reader.getFactory().createParser(response.body().asInputStream())
+            : reader.getFactory().createParser(reader(response));
+        try {
+            if (!JsonCursor.startArray(parser)) {
+                parser.close();
+                return JsonCursor.empty(type);
+            }
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+        return JsonCursor.adapt(new JsonCursor<>(parser, reader,
+            StreamingClient.detach(response.body())), type);
+    }
+
+    private Object decodeChars(Response response, ObjectReader reader) throws IOException {
+        try (PooledReader bodyReader = reader(response)) {
+            if (bodyReader.isEmpty()) {
+                return null;
+            }
+            return reader.readValue(bodyReader);
+        }
+    }
+
+    private static PooledReader reader(Response response) throws IOException {
+        Charset charset = charset(response.headers());
+        return new PooledReader(BufferPool.shared(), response.body().asInputStream(),
+            charset == null ? Util.UTF_8 : charset);
+    }
+
+    /**
+     * Content-Type没有声明charset，或者声明的是UTF编码时可以按字节解析.
+     */
+    static boolean isUnicode(Response response) {
+        Charset charset = charset(response.headers());
+        return charset == null || charset.name().startsWith("UTF-");
+    }
+
+    /**
+     * 读取Content-Type中的charset，没有或不认识时返回null.
+     */
+    static Charset charset(Map<String, Collection<String>> headers) {
+        for (Entry<String, Collection<String>> header : headers.entrySet()) {
+            if (!"Content-Type".equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                int index = value.toLowerCase().indexOf("charset=");
+                if (index < 0) {
+                    continue;
                 }
-            } catch (RuntimeJsonMappingException var5) {
-                if (var5.getCause() != null && var5.getCause() instanceof IOException) {
-                    throw (IOException) IOException.class.cast(var5.getCause());
-                } else {
-                    throw var5;
+                String name = value.substring(index + "charset=".length()).trim();
+                int end = name.indexOf(';');
+                if (end >= 0) {
+                    name = name.substring(0, end).trim();
+                }
+                name = name.replace("\"", "");
+                try {
+                    return Charset.forName(name);
+                } catch (RuntimeException ignore) {
+                    return null;
                 }
             }
         }
+        return null;
     }
 }
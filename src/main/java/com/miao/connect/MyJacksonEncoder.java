@@ -1,54 +1,104 @@
 package com.miao.connect;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import feign.RequestTemplate;
+import feign.Util;
 import feign.codec.EncodeException;
 import feign.codec.Encoder;
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.charset.Charset;
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 自定义Jackson编码，用于请求体序列化，这里主要为了支持LocalDate.
+ * 按bodyType缓存ObjectWriter，直接输出紧凑的UTF-8字节，写到{@link BufferPool}借来的缓冲区.
  * @author Ryan
  */
 public class MyJacksonEncoder implements Encoder {
 
     private final ObjectMapper mapper;
+    /**
+     * 请求没有声明Content-Type时使用，为null时不设置.
+     */
+    private final String contentType;
+    /**
+     * smile、cbor等二进制格式的body没有字符集.
+     */
+    private final Charset charset;
+    private final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
 
     public MyJacksonEncoder() {
         this(Collections.emptyList());
     }
 
+    public MyJacksonEncoder(Iterable<Module> modules) {
+        this(modules, false);
+    }
+
     /**
      * 构造器.
+     *
+     * @param modules 额外注册的jackson module
+     * @param prettyPrint 是否格式化输出，只建议调试时打开
      */
-    public MyJacksonEncoder(Iterable<Module> modules) {
+    public MyJacksonEncoder(Iterable<Module> modules, boolean prettyPrint) {
         this.mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
+        mapper.registerModules(modules);
         mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         mapper.setSerializationInclusion(Include.NON_NULL)
-            .configure(SerializationFeature.INDENT_OUTPUT, true);
+            .configure(SerializationFeature.INDENT_OUTPUT, prettyPrint);
+        this.contentType = null;
+        this.charset = Util.UTF_8;
     }
 
     public MyJacksonEncoder(ObjectMapper mapper) {
+        this(mapper, null);
+    }
+
+    /**
+     * 构造器.
+     *
+     * @param mapper 可以是SmileFactory、CBORFactory等创建的ObjectMapper
+     * @param contentType 请求没有声明Content-Type时设置的值
+     */
+    public MyJacksonEncoder(ObjectMapper mapper, String contentType) {
         this.mapper = mapper;
+        this.contentType = contentType;
+        this.charset = mapper.getFactory().canHandleBinaryNatively() ? null : Util.UTF_8;
     }
 
+    /**
+     * jackson用线程内复用的BufferRecycler做编码缓冲，写满后输出到缓冲池借来的缓冲区，
+     * 只在最后按实际大小拷贝一次交给RequestTemplate. writeValueAsBytes在超过2KB后每次扩容都要新分配一段.
+     */
     @Override
     public void encode(Object object, Type bodyType, RequestTemplate template) {
+        PooledOutputStream out = new PooledOutputStream(BufferPool.shared(), 8192);
         try {
-            JavaType javaType = this.mapper.getTypeFactory().constructType(bodyType);
-            String bodyText = this.mapper.writerFor(javaType).writeValueAsString(object);
-            System.out.println(bodyText);
-            template.body(bodyText);
-        } catch (JsonProcessingException var5) {
-            throw new EncodeException(var5.getMessage(), var5);
+            writerFor(bodyType).writeValue(out, object);
+            template.body(out.toByteArray(), charset);
+            if (contentType != null
+                && HttpHeaderUtils.first(template.headers(), "Content-Type") == null) {
+                template.header("Content-Type", contentType);
+            }
+        } catch (IOException e) {
+            throw new EncodeException(e.getMessage(), e);
+        } finally {
+            out.release();
         }
     }
-}
\ No newline at end of file
+
+    private ObjectWriter writerFor(Type bodyType) {
+        return writers.computeIfAbsent(bodyType,
+            t -> mapper.writerFor(mapper.getTypeFactory().constructType(t)));
+    }
+}
@@ -0,0 +1,204 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Timer;
+import feign.Request;
+import feign.Response.Body;
+import feign.Util;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 一个Connector.method的分阶段耗时：开启phaseTiming或slowCallMillis时按阶段记录指标，
+ * 超过slowCallMillis的调用按slowCallLogIntervalMillis采样记录日志. 没有开启时只读一次配置，不创建对象.
+ *
+ * @author Ryan
+ */
+class PhaseTimer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PhaseTimer.class);
+
+    private final LiveEndpoint endpoint;
+    private final FeignMetrics metrics;
+    private final String connector;
+    private final AtomicLong nextLogNanos = new AtomicLong(System.nanoTime());
+    private volatile Timers timers;
+
+    PhaseTimer(LiveEndpoint endpoint, FeignMetrics metrics, String connector) {
+        this.endpoint = endpoint;
+        this.metrics = metrics;
+        this.connector = connector;
+    }
+
+    /**
+     * 开始记录一次请求，没有开启时返回null.
+     */
+    CallTiming start() {
+        EndpointConfig config = endpoint.config();
+        return config.isPhaseTiming() || config.getSlowCallMillis() != null ? new CallTiming()
+            : null;
+    }
+
+    /**
+     * 换成记录读取耗时的响应体，关闭时结束这次请求的记录. body为null时直接结束.
+     */
+    Body track(Body body, CallTiming timing, Request request, int status) {
+        if (body == null) {
+            finish(timing, request, status);
+            return null;
+        }
+        return new TimingBody(body, timing, request, status);
+    }
+
+    /**
+     * 记录各阶段耗时，慢调用按间隔采样打印日志.
+     *
+     * @param status 状态码，IO异常时为-1
+     */
+    void finish(CallTiming timing, Request request, int status) {
+        long now = System.nanoTime();
+        long decode = timing.responseAtNanos == 0 ? 0
+            : Math.max(0, now - timing.responseAtNanos - timing.bodyReadNanos);
+        Timers timers = timers();
+        if (timing.dnsNanos > 0) {
+            timers.dns.record(timing.dnsNanos);
+        }
+        if (timing.connectNanos > 0) {
+            timers.connect.record(timing.connectNanos);
+        }
+        if (timing.tlsNanos > 0) {
+            timers.tls.record(timing.tlsNanos);
+        }
+        if (timing.ttfbNanos > 0) {
+            timers.ttfb.record(timing.ttfbNanos);
+        }
+        if (timing.responseAtNanos != 0) {
+            timers.bodyRead.record(timing.bodyReadNanos);
+        }
+
+        EndpointConfig config = endpoint.config();
+        Long slowCallMillis = config.getSlowCallMillis();
+        long total = now - timing.startNanos + Math.max(0, timing.queueWaitNanos);
+        if (slowCallMillis == null || total < TimeUnit.MILLISECONDS.toNanos(slowCallMillis)) {
+            return;
+        }
+        long next = nextLogNanos.get();
+        if (now - next >= 0 && nextLogNanos.compareAndSet(next,
+            now + TimeUnit.MILLISECONDS.toNanos(config.getSlowCallLogIntervalMillis()))) {
+            LOGGER.warn("慢调用：{} {} {}, status: {}, 耗时{}ms, {}", connector, request.method(),
+                request.url(), status < 0 ? "IO_ERROR" : status,
+                TimeUnit.NANOSECONDS.toMillis(total), timing.describe(decode));
+        }
+    }
+
+    private Timers timers() {
+        Timers timers = this.timers;
+        if (timers == null) {
+            synchronized (this) {
+                timers = this.timers;
+                if (timers == null) {
+                    timers = new Timers(metrics, connector);
+                    this.timers = timers;
+                }
+            }
+        }
+        return timers;
+    }
+
+    /**
+     * 第一次开启时才注册指标.
+     */
+    private static final class Timers {
+
+        final Timer dns;
+        final Timer connect;
+        final Timer tls;
+        final Timer ttfb;
+        final Timer bodyRead;
+
+        Timers(FeignMetrics metrics, String connector) {
+            this.dns = metrics.timer(FeignMetrics.DNS, connector);
+            this.connect = metrics.timer(FeignMetrics.CONNECT, connector);
+            this.tls = metrics.timer(FeignMetrics.TLS, connector);
+            this.ttfb = metrics.timer(FeignMetrics.TTFB, connector);
+            this.bodyRead = metrics.timer(FeignMetrics.BODY_READ, connector);
+        }
+    }
+
+    /**
+     * 记录读取响应体时等待网络的时间，关闭时结束记录.
+     */
+    private class TimingBody implements Body {
+
+        private final Body delegate;
+        private final CallTiming timing;
+        private final Request request;
+        private final int status;
+        private boolean finished;
+
+        TimingBody(Body delegate, CallTiming timing, Request request, int status) {
+            this.delegate = delegate;
+            this.timing = timing;
+            this.request = request;
+            this.status = status;
+        }
+
+        @Override
+        public Integer length() {
+            return delegate.length();
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return delegate.isRepeatable();
+        }
+
+        @Override
+        public InputStream asInputStream() throws IOException {
+            return new FilterInputStream(delegate.asInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        return super.read();
+                    } finally {
+                        timing.bodyReadNanos += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        return super.read(b, off, len);
+                    } finally {
+                        timing.bodyReadNanos += System.nanoTime() - start;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public Reader asReader() throws IOException {
+            return new InputStreamReader(asInputStream(), Util.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                delegate.close();
+            } finally {
+                if (!finished) {
+                    finished = true;
+                    finish(timing, request, status);
+                }
+            }
+        }
+    }
+}
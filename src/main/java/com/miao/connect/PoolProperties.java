@@ -0,0 +1,34 @@
+package com.miao.connect;
+
+import lombok.Data;
+
+/**
+ * 连接池配置，对应feign.endpointConfig.[Connector].[method]下的连接池相关配置.
+ *
+ * @author Ryan
+ */
+@Data
+public class PoolProperties {
+
+    /**
+     * 连接池最大连接数.
+     */
+    private int maxConnections = 200;
+    /**
+     * 每个route(host:port)的最大连接数.
+     */
+    private int maxConnectionsPerRoute = 50;
+    /**
+     * 空闲超过该时长的连接会被后台线程回收.
+     */
+    private long idleTimeoutMillis = 60000;
+    /**
+     * 连接keep-alive的最长时间，服务端返回的Keep-Alive更短时以服务端为准.
+     */
+    private long keepAliveMillis = 60000;
+    /**
+     * client: h2或h2c时每个节点(host:port)同时进行的请求数，也就是一个连接上的并发stream数.
+     */
+    private int maxConcurrentStreams = 100;
+
+}
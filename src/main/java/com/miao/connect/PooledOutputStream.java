@@ -0,0 +1,127 @@
+package com.miao.connect;
+
+import com.miao.connect.BufferPool.Buffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 写到{@link BufferPool}缓冲区的ByteArrayOutputStream，容量不够时换一个大一级的缓冲区，
+ * 最后toByteArray只按实际大小拷贝一次. 和ByteArrayOutputStream一样close不做任何事(jackson、gzip写完会close)，
+ * 用完要调用{@link #release()}归还缓冲区.
+ *
+ * @author Ryan
+ */
+final class PooledOutputStream extends OutputStream {
+
+    private final BufferPool pool;
+    private Buffer buffer;
+    private byte[] array;
+    private int count;
+
+    PooledOutputStream(BufferPool pool, int initialSize) {
+        this.pool = pool;
+        this.buffer = pool.acquire(initialSize);
+        this.array = buffer.array();
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        array[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, array, count, len);
+        count += len;
+    }
+
+    /**
+     * 把in剩下的内容读进来.
+     */
+    void readFrom(InputStream in) throws IOException {
+        while (true) {
+            if (count == array.length) {
+                ensureCapacity(count + 1);
+            }
+            int n = in.read(array, count, array.length - count);
+            if (n < 0) {
+                return;
+            }
+            count += n;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new OutOfMemoryError("body too large");
+        }
+        if (capacity <= array.length) {
+            return;
+        }
+        Buffer bigger = pool.acquire((int) Math.min(Math.max((long) array.length << 1, capacity),
+            Integer.MAX_VALUE - 8));
+        System.arraycopy(array, 0, bigger.array(), 0, count);
+        buffer.close();
+        buffer = bigger;
+        array = bigger.array();
+    }
+
+    int size() {
+        return count;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(array, count);
+    }
+
+    /**
+     * 归还缓冲区，之后不能再使用.
+     */
+    void release() {
+        buffer.close();
+    }
+
+    /**
+     * 读取整个流. 知道长度时直接分配，否则先读到缓冲区再按实际大小拷贝.
+     *
+     * @param length 流的长度，未知时小于0
+     */
+    static byte[] readFully(InputStream in, long length) throws IOException {
+        if (length >= 0 && length <= Integer.MAX_VALUE - 8) {
+            byte[] bytes = new byte[(int) length];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    return Arrays.copyOf(bytes, read);
+                }
+                read += n;
+            }
+            int next = in.read();
+            if (next < 0) {
+                return bytes;
+            }
+            //实际内容比声明的长
+            PooledOutputStream out = new PooledOutputStream(BufferPool.shared(), read + 1);
+            try {
+                out.write(bytes, 0, read);
+                out.write(next);
+                out.readFrom(in);
+                return out.toByteArray();
+            } finally {
+                out.release();
+            }
+        }
+        PooledOutputStream out = new PooledOutputStream(BufferPool.shared(), 8192);
+        try {
+            out.readFrom(in);
+            return out.toByteArray();
+        } finally {
+            out.release();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.miao.connect;
+
+import com.miao.connect.BufferPool.Buffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 从{@link BufferPool}借8KB缓冲区做字节到字符的转换，代替InputStreamReader每次新建的8KB缓冲区.
+ * 不合法的字节和InputStreamReader一样替换成U+FFFD. close时归还缓冲区并关闭流，可以多次close.
+ *
+ * @author Ryan
+ */
+final class PooledReader extends Reader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final CharsetDecoder decoder;
+    private final Buffer buffer;
+    private final ByteBuffer bytes;
+    private boolean eof;
+    private boolean flushed;
+    private boolean closed;
+
+    PooledReader(BufferPool pool, InputStream in, Charset charset) {
+        this.in = in;
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.buffer = pool.acquire(BUFFER_SIZE);
+        this.bytes = ByteBuffer.wrap(buffer.array(), 0, BUFFER_SIZE);
+        bytes.limit(0);
+    }
+
+    /**
+     * 流中没有任何内容时返回true，不消耗字符.
+     */
+    boolean isEmpty() throws IOException {
+        ensureOpen();
+        while (!bytes.hasRemaining() && !eof) {
+            fill();
+        }
+        return !bytes.hasRemaining() && eof;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || off + len > cbuf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (flushed) {
+            return -1;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (true) {
+            CoderResult result = decoder.decode(bytes, out, eof);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (eof) {
+                if (decoder.flush(out).isUnderflow()) {
+                    flushed = true;
+                }
+                break;
+            }
+            //已经有字符时先返回，不阻塞等待更多的数据
+            if (out.position() > off) {
+                break;
+            }
+            fill();
+        }
+        int read = out.position() - off;
+        return read == 0 && flushed ? -1 : read;
+    }
+
+    private void fill() throws IOException {
+        bytes.compact();
+        int n = in.read(bytes.array(), bytes.position(), bytes.remaining());
+        if (n < 0) {
+            eof = true;
+        } else {
+            bytes.position(bytes.position() + n);
+        }
+        bytes.flip();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            in.close();
+        } finally {
+            buffer.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.miao.connect;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Protobuf解码，返回类型必须是protoc生成的消息类型. 直接从响应的InputStream解析，并按Type缓存Parser.
+ *
+ * @author Ryan
+ */
+public class ProtobufDecoder implements Decoder {
+
+    private final Map<Type, Parser<?>> parsers = new ConcurrentHashMap<>();
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        if (response.status() == 404) {
+            return Util.emptyValueOf(type);
+        } else if (response.body() == null) {
+            return null;
+        }
+        Parser<?> parser = parserFor(type);
+        try (InputStream in = response.body().asInputStream()) {
+            return parser.parseFrom(in);
+        } catch (InvalidProtocolBufferException e) {
+            throw new DecodeException(e.getMessage(), e);
+        }
+    }
+
+    private Parser<?> parserFor(Type type) {
+        Parser<?> parser = parsers.get(type);
+        if (parser == null) {
+            if (!(type instanceof Class) || !MessageLite.class.isAssignableFrom((Class<?>) type)) {
+                throw new DecodeException("返回类型不是protobuf的消息类型：" + type);
+            }
+            try {
+                MessageLite prototype = (MessageLite) ((Class<?>) type)
+                    .getMethod("getDefaultInstance").invoke(null);
+                parser = prototype.getParserForType();
+            } catch (ReflectiveOperationException e) {
+                throw new DecodeException("无法获取protobuf消息的Parser：" + type, e);
+            }
+            parsers.put(type, parser);
+        }
+        return parser;
+    }
+}
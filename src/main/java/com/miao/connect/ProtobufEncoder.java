@@ -0,0 +1,28 @@
+package com.miao.connect;
+
+import com.google.protobuf.MessageLite;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import java.lang.reflect.Type;
+
+/**
+ * Protobuf编码，请求体必须是protoc生成的消息类型. 请求没有声明Content-Type时设置为application/x-protobuf.
+ *
+ * @author Ryan
+ */
+public class ProtobufEncoder implements Encoder {
+
+    public static final String MEDIA_TYPE = "application/x-protobuf";
+
+    @Override
+    public void encode(Object object, Type bodyType, RequestTemplate template) {
+        if (!(object instanceof MessageLite)) {
+            throw new EncodeException("请求体不是protobuf的消息类型：" + bodyType);
+        }
+        template.body(((MessageLite) object).toByteArray(), null);
+        if (HttpHeaderUtils.first(template.headers(), "Content-Type") == null) {
+            template.header("Content-Type", MEDIA_TYPE);
+        }
+    }
+}
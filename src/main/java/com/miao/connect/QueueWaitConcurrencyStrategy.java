@@ -0,0 +1,87 @@
+package com.miao.connect;
+
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.strategy.HystrixPlugins;
+import com.netflix.hystrix.strategy.concurrency.HystrixConcurrencyStrategy;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestVariable;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestVariableLifecycle;
+import com.netflix.hystrix.strategy.eventnotifier.HystrixEventNotifier;
+import com.netflix.hystrix.strategy.executionhook.HystrixCommandExecutionHook;
+import com.netflix.hystrix.strategy.metrics.HystrixMetricsPublisher;
+import com.netflix.hystrix.strategy.properties.HystrixPropertiesStrategy;
+import com.netflix.hystrix.strategy.properties.HystrixProperty;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录任务在hystrix线程池中的排队时间. wrapCallable在提交任务的线程上调用，call在线程池中执行，
+ * 两者的差值即为排队时间，放到{@link CallContext}里由client记录到对应的Connector.method.
+ * 其它行为全部委托给原来的strategy.
+ *
+ * @author Ryan
+ */
+class QueueWaitConcurrencyStrategy extends HystrixConcurrencyStrategy {
+
+    private final HystrixConcurrencyStrategy delegate;
+
+    private QueueWaitConcurrencyStrategy(HystrixConcurrencyStrategy delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 注册到HystrixPlugins，已经注册过时忽略. hystrix的plugin只能注册一次，这里保留其它已有的plugin后重新注册.
+     */
+    static synchronized void register() {
+        HystrixPlugins plugins = HystrixPlugins.getInstance();
+        HystrixConcurrencyStrategy existing = plugins.getConcurrencyStrategy();
+        if (existing instanceof QueueWaitConcurrencyStrategy) {
+            return;
+        }
+        HystrixCommandExecutionHook executionHook = plugins.getCommandExecutionHook();
+        HystrixEventNotifier eventNotifier = plugins.getEventNotifier();
+        HystrixMetricsPublisher metricsPublisher = plugins.getMetricsPublisher();
+        HystrixPropertiesStrategy propertiesStrategy = plugins.getPropertiesStrategy();
+        HystrixPlugins.reset();
+        plugins.registerConcurrencyStrategy(new QueueWaitConcurrencyStrategy(existing));
+        plugins.registerCommandExecutionHook(executionHook);
+        plugins.registerEventNotifier(eventNotifier);
+        plugins.registerMetricsPublisher(metricsPublisher);
+        plugins.registerPropertiesStrategy(propertiesStrategy);
+    }
+
+    @Override
+    public <T> Callable<T> wrapCallable(Callable<T> callable) {
+        Callable<T> wrapped = delegate.wrapCallable(callable);
+        long submitted = System.nanoTime();
+        return () -> {
+            CallContext context = CallContext.current();
+            context.queueWaitNanos = System.nanoTime() - submitted;
+            try {
+                return wrapped.call();
+            } finally {
+                context.queueWaitNanos = -1;
+            }
+        };
+    }
+
+    @Override
+    public ThreadPoolExecutor getThreadPool(HystrixThreadPoolKey threadPoolKey,
+        HystrixProperty<Integer> corePoolSize, HystrixProperty<Integer> maximumPoolSize,
+        HystrixProperty<Integer> keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue) {
+        return delegate.getThreadPool(threadPoolKey, corePoolSize, maximumPoolSize, keepAliveTime,
+            unit, workQueue);
+    }
+
+    @Override
+    public BlockingQueue<Runnable> getBlockingQueue(int maxQueueSize) {
+        return delegate.getBlockingQueue(maxQueueSize);
+    }
+
+    @Override
+    public <T> HystrixRequestVariable<T> getRequestVariable(
+        HystrixRequestVariableLifecycle<T> rv) {
+        return delegate.getRequestVariable(rv);
+    }
+}
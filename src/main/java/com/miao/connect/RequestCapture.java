@@ -0,0 +1,68 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Feign;
+import feign.Request;
+import feign.RequestInterceptor;
+import feign.Retryer;
+import feign.codec.Encoder;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * 不发出请求，得到Connector方法调用最终的Request(url、header和body).
+ * 用相同的encoder和拦截器构造一个普通的Feign，client直接把Request抛出来.
+ * 生成的Request要真正发出时才传入拦截器，只用来比较的(如合并请求的key)传空列表，避免拦截器多执行一次.
+ *
+ * @author Ryan
+ */
+class RequestCapture {
+
+    private static final Client CAPTURING_CLIENT = (request, options) -> {
+        throw new Captured(request);
+    };
+
+    private final Object capturer;
+
+    RequestCapture(Class<?> connectorClass, String url, Encoder encoder,
+        List<RequestInterceptor> requestInterceptors) {
+        this.capturer = Feign.builder()
+            .client(CAPTURING_CLIENT)
+            .retryer(Retryer.NEVER_RETRY)
+            .encoder(encoder)
+            .requestInterceptors(requestInterceptors)
+            .target(connectorClass, url);
+    }
+
+    /**
+     * 按method和参数生成Request，编码失败等异常原样抛出.
+     */
+    Request capture(Method method, Object[] args) {
+        try {
+            method.invoke(capturer, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Captured) {
+                return ((Captured) cause).request;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("生成请求失败：" + method, cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("生成请求失败：" + method, e);
+        }
+        throw new IllegalStateException("没有生成请求：" + method);
+    }
+
+    private static final class Captured extends RuntimeException {
+
+        private final transient Request request;
+
+        Captured(Request request) {
+            super(null, null, false, false);
+            this.request = request;
+        }
+    }
+}
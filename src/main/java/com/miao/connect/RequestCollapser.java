@@ -0,0 +1,158 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Summary;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把一个单key方法的调用按时间窗口合并成批量调用.
+ * 不额外起线程：开启新批次的调用方负责等待窗口结束(或批次攒满)后发出批量请求，
+ * 其余调用方等待各自key的结果.
+ *
+ * @author Ryan
+ */
+class RequestCollapser {
+
+    private final Object target;
+    private final Method bulkMethod;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Summary batchSizes;
+    private final Object lock = new Object();
+    private Batch current;
+
+    RequestCollapser(Object target, Method bulkMethod, long windowMillis, int maxBatchSize,
+        Summary batchSizes) {
+        this.target = target;
+        this.bulkMethod = bulkMethod;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizes = batchSizes;
+    }
+
+    /**
+     * 提交一个key并等待它的结果.
+     */
+    Object submit(Object key) throws Throwable {
+        Batch batch;
+        boolean leader = false;
+        CompletableFuture<Object> future;
+        synchronized (lock) {
+            if (current == null) {
+                current = new Batch();
+                leader = true;
+            }
+            batch = current;
+            future = batch.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (batch.futures.size() >= maxBatchSize) {
+                current = null;
+                batch.full.countDown();
+            }
+        }
+
+        if (leader) {
+            try {
+                batch.full.await(windowNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                //其他调用方还在等这个批次，先发出请求再恢复中断标记
+                Thread.currentThread().interrupt();
+            }
+            synchronized (lock) {
+                if (current == batch) {
+                    current = null;
+                }
+            }
+            execute(batch);
+        }
+        return await(future);
+    }
+
+    private void execute(Batch batch) {
+        Map<Object, CompletableFuture<Object>> futures = batch.futures;
+        List<Object> keys = new ArrayList<>(futures.keySet());
+        batchSizes.record(keys.size());
+        try {
+            Object result = bulkMethod.invoke(target, toArgument(keys));
+            if (result instanceof Map) {
+                Map<?, ?> values = (Map<?, ?>) result;
+                for (Entry<Object, CompletableFuture<Object>> entry : futures.entrySet()) {
+                    entry.getValue().complete(values.get(entry.getKey()));
+                }
+            } else if (result instanceof List && ((List<?>) result).size() == keys.size()) {
+                List<?> values = (List<?>) result;
+                for (int i = 0; i < keys.size(); i++) {
+                    futures.get(keys.get(i)).complete(values.get(i));
+                }
+            } else if (result == null) {
+                for (CompletableFuture<Object> future : futures.values()) {
+                    future.complete(null);
+                }
+            } else {
+                IllegalStateException e = new IllegalStateException(
+                    "批量方法返回的结果和请求的key数量不一致：" + bulkMethod);
+                for (CompletableFuture<Object> future : futures.values()) {
+                    future.completeExceptionally(e);
+                }
+            }
+        } catch (Throwable e) {
+            Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+            for (CompletableFuture<Object> future : futures.values()) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private Object toArgument(List<Object> keys) {
+        Class<?> type = bulkMethod.getParameterTypes()[0];
+        if (type.isArray()) {
+            Object array = Array.newInstance(type.getComponentType(), keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                Array.set(array, i, keys.get(i));
+            }
+            return array;
+        }
+        if (type.isAssignableFrom(ArrayList.class)) {
+            return keys;
+        }
+        return new LinkedHashSet<>(keys);
+    }
+
+    private static Object await(CompletableFuture<Object> future) throws Throwable {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待批量请求时被中断", e);
+        }
+    }
+
+    /**
+     * 校验批量方法的参数类型.
+     */
+    static boolean isBulkParameter(Class<?> type) {
+        return type.isArray() || type != Object.class
+            && (type.isAssignableFrom(ArrayList.class) || type.isAssignableFrom(LinkedHashSet.class));
+    }
+
+    private static final class Batch {
+
+        /**
+         * 同一批次中相同的key只请求一次，只在lock内修改.
+         */
+        private final Map<Object, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+    }
+}
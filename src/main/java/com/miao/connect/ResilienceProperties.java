@@ -0,0 +1,39 @@
+package com.miao.connect;
+
+import lombok.Data;
+
+/**
+ * resilience: lightweight时的熔断、超时和并发限制配置，对应feign.endpointConfig.[Connector].[method]下的同名配置.
+ * 默认值和hystrix的默认值保持一致.
+ *
+ * @author Ryan
+ */
+@Data
+public class ResilienceProperties {
+
+    /**
+     * 整个调用的超时时间，不配置时为connectTimeoutMillis + readTimeoutMillis.
+     */
+    private long timeoutMillis;
+    /**
+     * 每个方法同时进行的最大调用数，超过时直接拒绝，对应hystrix线程池的coreSize.
+     */
+    private int maxConcurrentCalls = 10;
+    /**
+     * 统计失败率的最近调用数，对应hystrix的requestVolumeThreshold.
+     */
+    private int ringBufferSize = 20;
+    /**
+     * 失败率达到该百分比时熔断.
+     */
+    private int failureRateThreshold = 50;
+    /**
+     * 熔断后经过该时长进入半开状态，放少量请求试探.
+     */
+    private long waitDurationInOpenStateMillis = 5000;
+    /**
+     * 半开状态下试探的请求数，全部成功后恢复，任意一个失败重新熔断.
+     */
+    private int permittedCallsInHalfOpenState = 1;
+
+}
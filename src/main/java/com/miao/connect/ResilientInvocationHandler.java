@@ -0,0 +1,170 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Counter;
+import com.netflix.hystrix.exception.HystrixBadRequestException;
+import feign.Feign;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * resilience: lightweight的实现，在调用线程上执行，不经过hystrix.
+ * 每个方法一个信号量隔离和一个环形缓冲区熔断器，超时、失败、熔断和并发已满时调用fallback，
+ * 和hystrix一样，HystrixBadRequestException不计入失败也不调用fallback.
+ *
+ * @author Ryan
+ */
+class ResilientInvocationHandler implements InvocationHandler {
+
+    private final Object target;
+    private final Object fallback;
+    private final Map<Method, Guard> guards;
+
+    private ResilientInvocationHandler(Object target, Object fallback, Map<Method, Guard> guards) {
+        this.target = target;
+        this.fallback = fallback;
+        this.guards = guards;
+    }
+
+    /**
+     * 给普通的Feign connector加上熔断、超时和并发限制.
+     *
+     * @param connector 指标的connector标签前缀，Connector.method
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T wrap(Class<T> connectorClass, T target, T fallback,
+        ResilienceProperties properties, FeignMetrics metrics, String connector) {
+        Map<Method, Guard> guards = new HashMap<>();
+        for (Method method : connectorClass.getMethods()) {
+            if (method.isDefault()) {
+                continue;
+            }
+            if (!CoalescingInvocationHandler.isBlocking(method)
+                && method.getReturnType() != void.class) {
+                throw new FeignConfigurationException("resilience: lightweight只支持同步返回结果的方法："
+                    + Feign.configKey(connectorClass, method));
+            }
+            guards.put(method, new Guard(properties, metrics, connector + "#" + method.getName()));
+        }
+        return (T) Proxy.newProxyInstance(connectorClass.getClassLoader(),
+            new Class<?>[]{connectorClass},
+            new ResilientInvocationHandler(target, fallback, guards));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "Resilient(" + target + ")";
+            }
+        }
+        Guard guard = guards.get(method);
+        if (guard == null) {
+            return invokeMethod(target, method, args);
+        }
+        //先占并发数再问熔断器，否则半开的试探名额被并发已满的调用用掉后不会再有结果，熔断器一直停在半开
+        if (!guard.bulkhead.tryAcquire()) {
+            guard.bulkheadFull.increment();
+            return fallback(method, args, new FeignRejectedException("并发数已满：" + guard.name));
+        }
+        if (!guard.circuitBreaker.tryAcquire()) {
+            guard.bulkhead.release();
+            guard.circuitOpen.increment();
+            return fallback(method, args, new FeignRejectedException("熔断已打开：" + guard.name));
+        }
+
+        CallContext context = CallContext.current();
+        long start = System.nanoTime();
+        context.deadlineNanos = start + guard.timeoutNanos;
+        Object result;
+        try {
+            result = invokeMethod(target, method, args);
+        } catch (HystrixBadRequestException e) {
+            guard.circuitBreaker.onSuccess();
+            throw e;
+        } catch (Throwable e) {
+            guard.circuitBreaker.onFailure();
+            if (e instanceof FeignTimeoutException) {
+                guard.timeouts.increment();
+            } else if (System.nanoTime() - start >= guard.timeoutNanos) {
+                //读超时被缩短到截止时间，抛出的是feign的RetryableException
+                guard.timeouts.increment();
+                e = new FeignTimeoutException("调用超时：" + guard.name, e);
+            } else {
+                guard.failures.increment();
+            }
+            return fallback(method, args, e);
+        } finally {
+            context.deadlineNanos = 0;
+            guard.bulkhead.release();
+        }
+
+        if (System.nanoTime() - start > guard.timeoutNanos) {
+            //和hystrix一样，超时后的结果丢弃，游标等结果占着连接，需要关闭
+            JsonCursor.closeDiscarded(result);
+            guard.circuitBreaker.onFailure();
+            guard.timeouts.increment();
+            return fallback(method, args, new FeignTimeoutException("调用超时：" + guard.name));
+        }
+        guard.circuitBreaker.onSuccess();
+        guard.successes.increment();
+        return result;
+    }
+
+    private Object fallback(Method method, Object[] args, Throwable cause) throws Throwable {
+        if (fallback == null) {
+            throw cause;
+        }
+        guards.get(method).fallbacks.increment();
+        return invokeMethod(fallback, method, args);
+    }
+
+    private static Object invokeMethod(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 一个方法的熔断器、信号量和指标.
+     */
+    private static final class Guard {
+
+        private final String name;
+        private final long timeoutNanos;
+        private final RingBufferCircuitBreaker circuitBreaker;
+        private final Semaphore bulkhead;
+        private final Counter successes;
+        private final Counter failures;
+        private final Counter timeouts;
+        private final Counter circuitOpen;
+        private final Counter bulkheadFull;
+        private final Counter fallbacks;
+
+        Guard(ResilienceProperties properties, FeignMetrics metrics, String name) {
+            this.name = name;
+            this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMillis());
+            this.circuitBreaker = new RingBufferCircuitBreaker(properties);
+            this.bulkhead = new Semaphore(properties.getMaxConcurrentCalls());
+            this.successes = metrics.counter(FeignMetrics.RESILIENCE, name, "success");
+            this.failures = metrics.counter(FeignMetrics.RESILIENCE, name, "failure");
+            this.timeouts = metrics.counter(FeignMetrics.RESILIENCE, name, "timeout");
+            this.circuitOpen = metrics.counter(FeignMetrics.RESILIENCE, name, "circuit_open");
+            this.bulkheadFull = metrics.counter(FeignMetrics.RESILIENCE, name, "bulkhead_full");
+            this.fallbacks = metrics.counter(FeignMetrics.RESILIENCE, name, "fallback");
+            metrics.gauge(FeignMetrics.CIRCUIT_STATE, name, circuitBreaker::state);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.miao.connect;
+
+import com.miao.connect.FeignMetrics.Counter;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+/**
+ * 按字节数限制大小的LRU响应缓存，所有开启缓存的endpoint共用一个.
+ *
+ * @author Ryan
+ */
+class ResponseCache {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, CachedResponse> entries =
+        new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+
+    ResponseCache(long maxBytes, long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    long maxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    synchronized CachedResponse get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * 放入缓存，超出总大小时从最久未使用的开始淘汰.
+     */
+    synchronized void put(String key, CachedResponse response) {
+        if (response.weight() > maxEntryBytes) {
+            return;
+        }
+        CachedResponse previous = entries.put(key, response);
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += response.weight();
+        Iterator<Entry<String, CachedResponse>> iterator = entries.entrySet().iterator();
+        while (weight > maxBytes && iterator.hasNext()) {
+            CachedResponse eldest = iterator.next().getValue();
+            iterator.remove();
+            weight -= eldest.weight();
+            eldest.evictions.increment();
+        }
+    }
+
+    synchronized void remove(String key) {
+        CachedResponse previous = entries.remove(key);
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+    }
+
+    synchronized long weight() {
+        return weight;
+    }
+
+    /**
+     * 缓存的响应，freshUntil之后需要用ETag/Last-Modified重新校验.
+     */
+    static class CachedResponse {
+
+        final int status;
+        final String reason;
+        final Map<String, Collection<String>> headers;
+        /**
+         * 请求中Accept和响应Vary列出的header的值，这些header不同的请求不能共用这个响应.
+         */
+        final Map<String, String> vary;
+        final byte[] body;
+        final Counter evictions;
+        volatile long freshUntil;
+
+        CachedResponse(int status, String reason, Map<String, Collection<String>> headers,
+            Map<String, String> vary, byte[] body, long freshUntil, Counter evictions) {
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.vary = vary;
+            this.body = body;
+            this.freshUntil = freshUntil;
+            this.evictions = evictions;
+        }
+
+        /**
+         * 估算占用的字节数，body加上header的长度.
+         */
+        long weight() {
+            long size = body.length + 64;
+            for (Entry<String, Collection<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    size += header.getKey().length() + value.length();
+                }
+            }
+            return size;
+        }
+
+        /**
+         * request的Accept和Vary列出的header与缓存时的请求一致.
+         */
+        boolean matches(Map<String, Collection<String>> requestHeaders) {
+            for (Entry<String, String> header : vary.entrySet()) {
+                if (!Objects.equals(header.getValue(), varyValue(requestHeaders, header.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 请求header的所有值用逗号连起来，没有时为null.
+         */
+        static String varyValue(Map<String, Collection<String>> requestHeaders, String name) {
+            Collection<String> values = HttpHeaderUtils.values(requestHeaders, name);
+            return values.isEmpty() ? null : String.join(",", values);
+        }
+
+        String etag() {
+            return HttpHeaderUtils.first(headers, "ETag");
+        }
+
+        String lastModified() {
+            return HttpHeaderUtils.first(headers, "Last-Modified");
+        }
+    }
+
+    /**
+     * 已解析的Cache-Control等缓存相关header.
+     */
+    static class CachePolicy {
+
+        boolean noStore;
+        boolean noCache;
+        /**
+         * Cache-Control: private，只能由单个用户的缓存保存，这里的缓存是共用的.
+         */
+        boolean privateOnly;
+        /**
+         * 缓存有效期，-1为没有声明.
+         */
+        long maxAgeMillis = -1;
+
+        static CachePolicy of(Map<String, Collection<String>> headers, long now) {
+            CachePolicy policy = new CachePolicy();
+            for (String value : HttpHeaderUtils.values(headers, "Cache-Control")) {
+                for (String directive : value.split(",")) {
+                    String d = directive.trim().toLowerCase();
+                    if (d.equals("no-store")) {
+                        policy.noStore = true;
+                    } else if (d.startsWith("private")) {
+                        policy.privateOnly = true;
+                    } else if (d.startsWith("no-cache")) {
+                        policy.noCache = true;
+                    } else if (d.startsWith("max-age=")) {
+                        try {
+                            policy.maxAgeMillis = Long.parseLong(d.substring(8).replace("\"", ""))
+                                * 1000;
+                        } catch (NumberFormatException ignore) {
+                            policy.noCache = true;
+                        }
+                    }
+                }
+            }
+            if (policy.maxAgeMillis >= 0) {
+                String age = HttpHeaderUtils.first(headers, "Age");
+                if (age != null) {
+                    try {
+                        policy.maxAgeMillis -= Long.parseLong(age.trim()) * 1000;
+                    } catch (NumberFormatException ignore) {
+                        //ignore
+                    }
+                }
+            } else {
+                long expires = HttpDates.parse(HttpHeaderUtils.first(headers, "Expires"));
+                if (expires >= 0) {
+                    long date = HttpDates.parse(HttpHeaderUtils.first(headers, "Date"));
+                    policy.maxAgeMillis = expires - (date >= 0 ? date : now);
+                }
+            }
+            return policy;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.miao.connect;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 基于环形缓冲区的无锁熔断器. 关闭状态下记录最近ringBufferSize次调用的结果，
+ * 缓冲区写满且失败率达到阈值时打开，等待一段时间后进入半开状态放少量请求试探.
+ * 状态切换都是对不可变的Phase做CAS.
+ *
+ * @author Ryan
+ */
+class RingBufferCircuitBreaker {
+
+    static final int CLOSED = 0;
+    static final int OPEN = 1;
+    static final int HALF_OPEN = 2;
+
+    private static final int EMPTY = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+
+    private final int ringBufferSize;
+    private final int failureRateThreshold;
+    private final long waitDurationNanos;
+    private final int permittedCallsInHalfOpenState;
+    private final AtomicReference<Phase> phase;
+
+    RingBufferCircuitBreaker(ResilienceProperties properties) {
+        this.ringBufferSize = properties.getRingBufferSize();
+        this.failureRateThreshold = properties.getFailureRateThreshold();
+        this.waitDurationNanos = TimeUnit.MILLISECONDS
+            .toNanos(properties.getWaitDurationInOpenStateMillis());
+        this.permittedCallsInHalfOpenState = properties.getPermittedCallsInHalfOpenState();
+        this.phase = new AtomicReference<>(closed());
+    }
+
+    /**
+     * 是否允许发出请求，打开状态到期时切换为半开.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            Phase current = phase.get();
+            switch (current.state) {
+                case CLOSED:
+                    return true;
+                case HALF_OPEN:
+                    return current.permits.getAndDecrement() > 0;
+                default:
+                    if (System.nanoTime() - current.openedAt < waitDurationNanos) {
+                        return false;
+                    }
+                    phase.compareAndSet(current, halfOpen());
+            }
+        }
+    }
+
+    void onSuccess() {
+        Phase current = phase.get();
+        if (current.state == CLOSED) {
+            record(current, false);
+        } else if (current.state == HALF_OPEN
+            && current.successes.incrementAndGet() >= permittedCallsInHalfOpenState) {
+            phase.compareAndSet(current, closed());
+        }
+    }
+
+    void onFailure() {
+        Phase current = phase.get();
+        if (current.state == CLOSED) {
+            if (record(current, true)) {
+                phase.compareAndSet(current, open());
+            }
+        } else if (current.state == HALF_OPEN) {
+            phase.compareAndSet(current, open());
+        }
+    }
+
+    int state() {
+        return phase.get().state;
+    }
+
+    /**
+     * 写入环形缓冲区，返回是否需要熔断.
+     */
+    private boolean record(Phase closed, boolean failure) {
+        int index = Math.floorMod(closed.cursor.getAndIncrement(), ringBufferSize);
+        int previous = closed.ring.getAndSet(index, failure ? FAILURE : SUCCESS);
+        int recorded = previous == EMPTY ? closed.recorded.incrementAndGet()
+            : closed.recorded.get();
+        int delta = (failure ? 1 : 0) - (previous == FAILURE ? 1 : 0);
+        int failures = delta == 0 ? closed.failures.get() : closed.failures.addAndGet(delta);
+        return failure && recorded >= ringBufferSize
+            && failures * 100L >= (long) failureRateThreshold * ringBufferSize;
+    }
+
+    private Phase closed() {
+        return new Phase(CLOSED, 0, new AtomicIntegerArray(ringBufferSize), 0);
+    }
+
+    private Phase open() {
+        return new Phase(OPEN, System.nanoTime(), null, 0);
+    }
+
+    private Phase halfOpen() {
+        return new Phase(HALF_OPEN, 0, null, permittedCallsInHalfOpenState);
+    }
+
+    private static final class Phase {
+
+        private final int state;
+        private final long openedAt;
+        private final AtomicIntegerArray ring;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final AtomicInteger recorded = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger permits;
+        private final AtomicInteger successes = new AtomicInteger();
+
+        Phase(int state, long openedAt, AtomicIntegerArray ring, int permits) {
+            this.state = state;
+            this.openedAt = openedAt;
+            this.ring = ring;
+            this.permits = new AtomicInteger(permits);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.miao.connect;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 默认的内存指标实现，没有接入监控系统时可以通过{@link #snapshot()}查看.
+ *
+ * @author Ryan
+ */
+public class SimpleFeignMetrics implements FeignMetrics {
+
+    private final Map<String, HistogramMeter> histograms = new ConcurrentHashMap<>();
+    private final Map<String, CounterMeter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    @Override
+    public Timer timer(String name, String connector) {
+        return histograms.computeIfAbsent(id(name, connector, null), k -> new HistogramMeter());
+    }
+
+    @Override
+    public Summary summary(String name, String connector) {
+        return histograms.computeIfAbsent(id(name, connector, null), k -> new HistogramMeter());
+    }
+
+    @Override
+    public Counter counter(String name, String connector, String outcome) {
+        return counters.computeIfAbsent(id(name, connector, outcome), k -> new CounterMeter());
+    }
+
+    @Override
+    public void gauge(String name, String connector, LongSupplier value) {
+        gauges.put(id(name, connector, null), value);
+    }
+
+    /**
+     * 当前所有指标的快照，timer的单位为纳秒.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        for (Entry<String, HistogramMeter> entry : histograms.entrySet()) {
+            LogHistogram histogram = entry.getValue().histogram;
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("count", histogram.count());
+            values.put("total", histogram.total());
+            values.put("max", histogram.max());
+            values.put("p50", histogram.percentile(50));
+            values.put("p99", histogram.percentile(99));
+            snapshot.put(entry.getKey(), values);
+        }
+        for (Entry<String, CounterMeter> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().count.sum());
+        }
+        for (Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        return snapshot;
+    }
+
+    private static String id(String name, String connector, String outcome) {
+        StringBuilder id = new StringBuilder(name).append('{').append(CONNECTOR_TAG).append('=')
+            .append(connector);
+        if (outcome != null) {
+            id.append(',').append(OUTCOME_TAG).append('=').append(outcome);
+        }
+        return id.append('}').toString();
+    }
+
+    private static class HistogramMeter implements Timer, Summary {
+
+        private final LogHistogram histogram = new LogHistogram();
+
+        @Override
+        public void record(long value) {
+            histogram.record(value);
+        }
+    }
+
+    private static class CounterMeter implements Counter {
+
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void increment() {
+            count.increment();
+        }
+    }
+}
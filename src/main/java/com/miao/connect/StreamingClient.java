@@ -0,0 +1,84 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import feign.Response.Body;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Connector有返回Iterator、Stream或Cursor的方法时使用. feign解码后总会关闭响应体，
+ * 这里把响应体换成可以被解码器接管的body，接管后由游标在读完或close时关闭.
+ *
+ * @author Ryan
+ */
+class StreamingClient implements Client {
+
+    private final Client delegate;
+
+    StreamingClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request, Options options) throws IOException {
+        Response response = delegate.execute(request, options);
+        if (response.body() == null) {
+            return response;
+        }
+        return response.toBuilder().body(new DetachableBody(response.body())).build();
+    }
+
+    /**
+     * 接管响应体，之后feign关闭响应时不再关闭连接. 不是StreamingClient创建的body(如日志重新缓冲过的)直接返回.
+     */
+    static Closeable detach(Body body) {
+        if (body instanceof DetachableBody) {
+            DetachableBody detachable = (DetachableBody) body;
+            detachable.detached = true;
+            return detachable.delegate;
+        }
+        return body;
+    }
+
+    private static class DetachableBody implements Body {
+
+        private final Body delegate;
+        private volatile boolean detached;
+
+        DetachableBody(Body delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Integer length() {
+            return delegate.length();
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return delegate.isRepeatable();
+        }
+
+        @Override
+        public InputStream asInputStream() throws IOException {
+            return delegate.asInputStream();
+        }
+
+        @Override
+        public Reader asReader() throws IOException {
+            return delegate.asReader();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!detached) {
+                delegate.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.miao.connect;
+
+import lombok.Data;
+
+/**
+ * hystrix线程池的隔离和自动调整配置，对应feign.endpointConfig.[Connector].[method]下的同名配置.
+ *
+ * @author Ryan
+ */
+@Data
+public class ThreadPoolProperties {
+
+    /**
+     * 每个方法使用单独的线程池，默认同一个url的所有方法共用一个.
+     */
+    private boolean threadPoolPerMethod;
+    /**
+     * 按吞吐量和执行时间自动调整线程池大小，开启时每个方法使用单独的线程池.
+     */
+    private boolean threadPoolAutoSize;
+    private int minThreadPoolSize = 2;
+    private int maxThreadPoolSize = 50;
+    /**
+     * 自动调整时排队队列的容量，创建线程池后不能修改，0表示不排队.
+     */
+    private int threadPoolMaxQueueSize;
+    /**
+     * 期望的线程利用率百分比，线程数 = 吞吐量 * 平均执行时间 / 利用率.
+     */
+    private int threadPoolTargetUtilization = 70;
+    private long threadPoolResizeIntervalMillis = 10000;
+
+}
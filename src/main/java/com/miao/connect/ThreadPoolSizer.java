@@ -0,0 +1,202 @@
+package com.miao.connect;
+
+import com.netflix.config.ConfigurationManager;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandMetrics;
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.HystrixThreadPoolMetrics;
+import com.netflix.hystrix.util.HystrixRollingNumberEvent;
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按方法隔离的hystrix线程池：发布线程数、活跃线程数和排队数，开启threadPoolAutoSize时按Little's law定期调整大小.
+ * 需要的线程数 = 吞吐量 * 平均执行时间，再除以目标利用率留出余量，限制在[minThreadPoolSize, maxThreadPoolSize]之间.
+ * 线程池饱和(窗口内最大活跃线程数达到线程数或者有请求被拒绝)时至少扩大一半，空闲时每次最多缩小四分之一并且不小于最近的最大活跃线程数加一，避免来回抖动.
+ * hystrix 1.4每次执行前读取coreSize和queueSizeRejectionThreshold，这里通过archaius修改，
+ * maxQueueSize只在创建线程池时读取一次.
+ *
+ * @author Ryan
+ */
+class ThreadPoolSizer implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadPoolSizer.class);
+    private static final String PREFIX = "hystrix.threadpool.";
+    private static final int HYSTRIX_DEFAULT_CORE_SIZE = 10;
+
+    private final FeignMetrics metrics;
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService scheduler;
+
+    ThreadPoolSizer(FeignMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 注册一个按方法隔离的线程池，同一个key只注册一次. 需要在线程池创建(第一次执行)之前调用，maxQueueSize才能生效.
+     *
+     * @param threadPoolKey 和commandKey相同，Connector#method
+     */
+    void register(String threadPoolKey, ThreadPoolProperties properties) {
+        pools.computeIfAbsent(threadPoolKey, key -> {
+            Pool pool = new Pool(key, properties);
+            gauge(FeignMetrics.THREAD_POOL_SIZE, key,
+                threadPool -> threadPool.getCurrentCorePoolSize().longValue());
+            gauge(FeignMetrics.THREAD_POOL_ACTIVE, key,
+                threadPool -> threadPool.getCurrentActiveCount().longValue());
+            gauge(FeignMetrics.THREAD_POOL_QUEUE, key,
+                threadPool -> threadPool.getCurrentQueueSize().longValue());
+            if (properties.isThreadPoolAutoSize()) {
+                pool.init();
+                long interval = properties.getThreadPoolResizeIntervalMillis();
+                scheduler().scheduleWithFixedDelay(pool::resizeQuietly, interval, interval,
+                    TimeUnit.MILLISECONDS);
+            }
+            return pool;
+        });
+    }
+
+    /**
+     * 线程池在第一次执行时才创建，之前为0.
+     */
+    private void gauge(String name, String threadPoolKey,
+        ToLongFunction<HystrixThreadPoolMetrics> value) {
+        HystrixThreadPoolKey key = HystrixThreadPoolKey.Factory.asKey(threadPoolKey);
+        metrics.gauge(name, threadPoolKey, () -> {
+            HystrixThreadPoolMetrics threadPool = HystrixThreadPoolMetrics.getInstance(key);
+            return threadPool == null ? 0 : value.applyAsLong(threadPool);
+        });
+    }
+
+    private ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            synchronized (this) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "feign-threadpool-sizer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static final class Pool {
+
+        private final String name;
+        private final HystrixThreadPoolKey threadPoolKey;
+        private final HystrixCommandKey commandKey;
+        private final ThreadPoolProperties properties;
+        private int coreSize;
+        private long lastCompleted = -1;
+        private long lastNanos;
+
+        Pool(String name, ThreadPoolProperties properties) {
+            this.name = name;
+            this.threadPoolKey = HystrixThreadPoolKey.Factory.asKey(name);
+            this.commandKey = HystrixCommandKey.Factory.asKey(name);
+            this.properties = properties;
+        }
+
+        /**
+         * 从hystrix.threadpool.default.coreSize开始.
+         */
+        void init() {
+            AbstractConfiguration configuration = ConfigurationManager.getConfigInstance();
+            int maxQueueSize = properties.getThreadPoolMaxQueueSize();
+            configuration.setProperty(PREFIX + name + ".maxQueueSize",
+                maxQueueSize > 0 ? maxQueueSize : -1);
+            apply(clamp(configuration.getInt(PREFIX + "default.coreSize",
+                HYSTRIX_DEFAULT_CORE_SIZE)));
+        }
+
+        void resizeQuietly() {
+            try {
+                resize();
+            } catch (RuntimeException e) {
+                LOGGER.warn("调整线程池失败：{}", name, e);
+            }
+        }
+
+        private void resize() {
+            HystrixThreadPoolMetrics threadPool = HystrixThreadPoolMetrics
+                .getInstance(threadPoolKey);
+            HystrixCommandMetrics command = HystrixCommandMetrics.getInstance(commandKey);
+            if (threadPool == null || command == null) {
+                return;
+            }
+            long completed = threadPool.getCurrentCompletedTaskCount().longValue();
+            long now = System.nanoTime();
+            if (lastCompleted < 0) {
+                lastCompleted = completed;
+                lastNanos = now;
+                return;
+            }
+            double throughputPerMilli = (completed - lastCompleted)
+                / (double) TimeUnit.NANOSECONDS.toMillis(Math.max(now - lastNanos, 1000000));
+            lastCompleted = completed;
+            lastNanos = now;
+            int meanMillis = command.getExecutionTimeMean();
+            if (meanMillis < 0) {
+                //关闭了metrics.rollingPercentile
+                return;
+            }
+
+            int target = (int) Math.ceil(throughputPerMilli * meanMillis * 100
+                / properties.getThreadPoolTargetUtilization());
+            long maxActive = threadPool.getRollingMaxActiveThreads();
+            boolean saturated = maxActive >= coreSize
+                || threadPool.getRollingCount(HystrixRollingNumberEvent.THREAD_POOL_REJECTED) > 0;
+            if (saturated) {
+                target = Math.max(target, coreSize + Math.max(1, coreSize / 2));
+            } else if (target < coreSize) {
+                //比窗口内的最大活跃线程数多留一个，否则缩小后马上又判断为饱和
+                target = Math.max(target, (int) Math.max(maxActive + 1,
+                    coreSize - Math.max(1, coreSize / 4)));
+            }
+            target = clamp(target);
+            if (target != coreSize) {
+                LOGGER.info("调整线程池：{}, {} -> {}, 吞吐量: {}/s, 平均执行时间: {}ms, 饱和: {}", name,
+                    coreSize, target, Math.round(throughputPerMilli * 1000), meanMillis,
+                    saturated);
+                apply(target);
+            }
+        }
+
+        /**
+         * 排队数不超过线程数，排队的请求大约最多再等一个平均执行时间.
+         */
+        private void apply(int size) {
+            AbstractConfiguration configuration = ConfigurationManager.getConfigInstance();
+            configuration.setProperty(PREFIX + name + ".coreSize", size);
+            int maxQueueSize = properties.getThreadPoolMaxQueueSize();
+            if (maxQueueSize > 0) {
+                configuration.setProperty(PREFIX + name + ".queueSizeRejectionThreshold",
+                    Math.min(size, maxQueueSize));
+            }
+            this.coreSize = size;
+        }
+
+        private int clamp(int size) {
+            return Math.min(properties.getMaxThreadPoolSize(),
+                Math.max(properties.getMinThreadPoolSize(), size));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.miao.connect;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * resilience: lightweight时在调用线程上执行，无法像hystrix那样中断，
+ * 这里按剩余时间缩短连接和读取超时，让请求在截止时间附近结束.
+ *
+ * @author Ryan
+ */
+class TimeLimitedClient implements Client {
+
+    private final Client delegate;
+
+    TimeLimitedClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request, Options options) throws IOException {
+        long deadline = CallContext.current().deadlineNanos;
+        if (deadline == 0) {
+            return delegate.execute(request, options);
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+            throw new FeignTimeoutException("请求发出前已经超时：" + request.url());
+        }
+        if (remaining >= options.connectTimeoutMillis()
+            && remaining >= options.readTimeoutMillis()) {
+            return delegate.execute(request, options);
+        }
+        int limit = (int) remaining;
+        return delegate.execute(request, new Options(
+            Math.min(options.connectTimeoutMillis(), limit),
+            Math.min(options.readTimeoutMillis(), limit),
+            options.isFollowRedirects()));
+    }
+}
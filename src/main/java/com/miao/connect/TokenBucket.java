@@ -0,0 +1,61 @@
+package com.miao.connect;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按请求数发放令牌的预算，每个正常请求存入一定比例的令牌，额外的请求(对冲、重试)消耗一个令牌.
+ * 这样额外请求最多只占正常请求的固定比例，下游故障时不会成倍放大流量. 无锁，令牌按千分之一计数.
+ *
+ * @author Ryan
+ */
+class TokenBucket {
+
+    private static final long SCALE = 1000;
+
+    private final long capacity;
+    private final AtomicLong balance;
+
+    /**
+     * 构造器，初始时令牌是满的.
+     *
+     * @param maxTokens 最多积攒的令牌数，也就是允许的突发额外请求数
+     */
+    TokenBucket(int maxTokens) {
+        this.capacity = maxTokens * SCALE;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    /**
+     * 存入令牌，超过上限的部分丢弃.
+     */
+    void deposit(double tokens) {
+        long amount = (long) (tokens * SCALE);
+        if (amount <= 0) {
+            return;
+        }
+        while (true) {
+            long current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+            if (balance.compareAndSet(current, Math.min(capacity, current + amount))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 取出一个令牌，不足一个时返回false.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import feign.RetryableException;
+import feign.Retryer;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * BudgetedRetryer的测试.
+ *
+ * @author Ryan
+ */
+public class BudgetedRetryerTest {
+
+    private static final String PREFIX = "feign.endpointConfig.Api.default.";
+
+    private final SimpleFeignMetrics metrics = new SimpleFeignMetrics();
+    private final Map<String, Object> properties = new HashMap<>();
+
+    public BudgetedRetryerTest() {
+        properties.put(PREFIX + "url", "http://localhost");
+        properties.put(PREFIX + "readTimeoutMillis", "1000");
+        properties.put(PREFIX + "connectTimeoutMillis", "1000");
+        properties.put(PREFIX + "retryBackoffMillis", "0");
+        CallContext.current().requestMethod = "GET";
+    }
+
+    @After
+    public void tearDown() {
+        CallContext context = CallContext.current();
+        context.requestMethod = null;
+        context.deadlineNanos = 0;
+    }
+
+    /**
+     * 一共最多尝试retryMaxAttempts次.
+     */
+    @Test
+    public void stopsAtMaxAttempts() {
+        properties.put(PREFIX + "retryMaxAttempts", "3");
+        Retryer retryer = retryer().clone();
+        RetryableException e = ioError(null);
+
+        retryer.continueOrPropagate(e);
+        retryer.continueOrPropagate(e);
+        assertPropagated(retryer, e);
+        assertEquals(2L, counter("retried"));
+    }
+
+    /**
+     * 预算比例为0时只有初始的10个令牌，用完后不再重试.
+     */
+    @Test
+    public void budgetRunsOut() {
+        properties.put(PREFIX + "retryMaxAttempts", "100");
+        properties.put(PREFIX + "retryBudgetPercent", "0");
+        Retryer retryer = retryer().clone();
+        RetryableException e = ioError(null);
+
+        for (int i = 0; i < 10; i++) {
+            retryer.continueOrPropagate(e);
+        }
+        assertPropagated(retryer, e);
+        assertEquals(10L, counter("retried"));
+        assertEquals(1L, counter("budget_exhausted"));
+    }
+
+    /**
+     * POST的IO异常不知道服务端有没有处理，不重试.
+     */
+    @Test
+    public void postIoErrorNotRetried() {
+        properties.put(PREFIX + "retryMaxAttempts", "3");
+        CallContext.current().requestMethod = "POST";
+        Retryer retryer = retryer().clone();
+
+        assertPropagated(retryer, ioError(null));
+        assertEquals(0L, counter("retried"));
+    }
+
+    /**
+     * Retry-After要求的等待超过了调用的截止时间，直接放弃.
+     */
+    @Test
+    public void deadlineCutsOff() {
+        properties.put(PREFIX + "retryMaxAttempts", "3");
+        CallContext.current().deadlineNanos = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(50);
+        Retryer retryer = retryer().clone();
+
+        assertPropagated(retryer, ioError(new Date(System.currentTimeMillis() + 500)));
+        assertEquals(0L, counter("retried"));
+        assertEquals(1L, counter("deadline_exceeded"));
+    }
+
+    private BudgetedRetryer retryer() {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        LiveEndpoint endpoint = new LiveEndpoint("Api.default",
+            new EndpointConfig(environment, "Api.default"), metrics);
+        return new BudgetedRetryer(endpoint, metrics, "Api");
+    }
+
+    private static RetryableException ioError(Date retryAfter) {
+        return new RetryableException("connect timed out", new IOException("connect timed out"),
+            retryAfter);
+    }
+
+    private static void assertPropagated(Retryer retryer, RetryableException e) {
+        try {
+            retryer.continueOrPropagate(e);
+            fail("应该放弃重试");
+        } catch (RetryableException propagated) {
+            assertSame(e, propagated);
+        }
+    }
+
+    private long counter(String outcome) {
+        Object value = metrics.snapshot()
+            .get(FeignMetrics.RETRY + "{connector=Api,outcome=" + outcome + "}");
+        return value == null ? 0 : (Long) value;
+    }
+}
@@ -0,0 +1,74 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.miao.connect.BufferPool.Buffer;
+import org.junit.Test;
+
+/**
+ * BufferPool的测试.
+ *
+ * @author Ryan
+ */
+public class BufferPoolTest {
+
+    private final BufferPool pool = new BufferPool(4);
+
+    /**
+     * 归还后同一个线程再借同一个size class命中，拿到同一个数组.
+     */
+    @Test
+    public void hitAfterRelease() {
+        Buffer first = pool.acquire(1000);
+        byte[] array = first.array();
+        assertEquals(1024, array.length);
+        assertEquals(1, pool.leased());
+        first.close();
+        assertEquals(0, pool.leased());
+
+        try (Buffer second = pool.acquire(600)) {
+            assertSame(array, second.array());
+        }
+        assertEquals(1, pool.hits());
+        assertEquals(1, pool.misses());
+    }
+
+    /**
+     * 多次close只归还一次，之后两次借出不会拿到同一个数组.
+     */
+    @Test
+    public void noDoubleReturn() {
+        Buffer buffer = pool.acquire(1000);
+        buffer.close();
+        buffer.close();
+        assertEquals(0, pool.leased());
+
+        try (Buffer first = pool.acquire(1000); Buffer second = pool.acquire(1000)) {
+            assertNotSame(first.array(), second.array());
+        }
+        assertEquals(1, pool.hits());
+        assertEquals(2, pool.misses());
+    }
+
+    /**
+     * 开启leakDetection后没有归还就被回收的缓冲区计入泄漏，不再算作借出.
+     */
+    @Test
+    public void leakDetected() throws Exception {
+        pool.setLeakDetection(true);
+        leak();
+        for (int i = 0; i < 50 && pool.leaks() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+            pool.reportLeaks();
+        }
+        assertEquals(1, pool.leaks());
+        assertEquals(0, pool.leased());
+    }
+
+    private void leak() {
+        pool.acquire(1000);
+    }
+}
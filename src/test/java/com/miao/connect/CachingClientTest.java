@@ -0,0 +1,102 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * CachingClient的测试，一个调用方的响应不能被其它调用方拿到.
+ *
+ * @author Ryan
+ */
+public class CachingClientTest {
+
+    private static final String URL = "http://localhost/user";
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Map<String, Collection<String>> responseHeaders = new HashMap<>();
+
+    private final Client server = (request, options) -> {
+        calls.incrementAndGet();
+        return Response.builder()
+            .status(200)
+            .reason("OK")
+            .headers(responseHeaders)
+            .body(("body-" + calls.get()).getBytes(StandardCharsets.UTF_8))
+            .request(request)
+            .build();
+    };
+
+    private final CachingClient client = new CachingClient(server,
+        new ResponseCache(1 << 20, 1 << 16), -1, FeignMetrics.NOOP, "Api");
+
+    @Test
+    public void publicResponseCached() throws Exception {
+        header("Cache-Control", "max-age=60");
+        get();
+        get();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void privateResponseNotCached() throws Exception {
+        header("Cache-Control", "private, max-age=60");
+        get();
+        get();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void authorizedRequestBypassesCache() throws Exception {
+        header("Cache-Control", "max-age=60");
+        get("Authorization", "Bearer a");
+        get("Authorization", "Bearer b");
+        get();
+        get("Authorization", "Bearer a");
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void varyHeadersMustMatch() throws Exception {
+        header("Cache-Control", "max-age=60");
+        header("Vary", "X-Tenant");
+        get("X-Tenant", "a");
+        get("X-Tenant", "a");
+        assertEquals(1, calls.get());
+        get("X-Tenant", "b");
+        get();
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void varyStarNotCached() throws Exception {
+        header("Cache-Control", "max-age=60");
+        header("Vary", "*");
+        get();
+        get();
+        assertEquals(2, calls.get());
+    }
+
+    private void header(String name, String value) {
+        responseHeaders.put(name, Collections.singletonList(value));
+    }
+
+    private void get(String... header) throws Exception {
+        Map<String, Collection<String>> headers = new HashMap<>();
+        if (header.length == 2) {
+            headers.put(header[0], Collections.singletonList(header[1]));
+        }
+        client.execute(Request.create("GET", URL, headers, null, null), new Options())
+            .close();
+    }
+}
@@ -0,0 +1,131 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import feign.Client;
+import feign.Feign;
+import feign.Param;
+import feign.RequestInterceptor;
+import feign.RequestLine;
+import feign.Response;
+import feign.codec.Encoder;
+import feign.codec.StringDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * CoalescingInvocationHandler的测试.
+ *
+ * @author Ryan
+ */
+public class CoalescingInvocationHandlerTest {
+
+    private static final String URL = "http://localhost";
+
+    public interface Api {
+
+        @RequestLine("GET /users/{name}")
+        String user(@Param("name") String name);
+    }
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private final AtomicInteger sent = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final SimpleFeignMetrics metrics = new SimpleFeignMetrics();
+    private final ThreadLocal<String> token = new ThreadLocal<>();
+
+    /**
+     * 拦截器每次添加不同的请求id也能合并，真正发出的请求只有一个.
+     */
+    @Test
+    public void requestIdDoesNotSplitCalls() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        Api api = api(entered,
+            template -> template.header("X-Request-Id", UUID.randomUUID().toString()));
+
+        Future<String> leader = executor.submit(() -> api.user("ryan"));
+        entered.await(5, TimeUnit.SECONDS);
+        Future<String> follower = executor.submit(() -> api.user("ryan"));
+        String joined = FeignMetrics.COALESCE + "{connector=Api,outcome=joined}";
+        for (int i = 0; i < 500 && !Long.valueOf(1).equals(metrics.snapshot().get(joined)); i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        release.countDown();
+
+        assertEquals(URL + "/users/ryan", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(URL + "/users/ryan", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, sent.get());
+    }
+
+    /**
+     * 拦截器按调用方添加的Authorization不同时不合并，每个调用方拿到自己的响应.
+     */
+    @Test
+    public void differentCredentialsNotCoalesced() throws Exception {
+        CountDownLatch entered = new CountDownLatch(2);
+        Api api = api(entered, template -> template.header("Authorization", token.get()));
+
+        Future<String> first = executor.submit(() -> call(api, "a"));
+        Future<String> second = executor.submit(() -> call(api, "b"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        assertEquals("b", second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, sent.get());
+    }
+
+    private String call(Api api, String user) {
+        token.set(user);
+        return api.user("ryan");
+    }
+
+    /**
+     * 响应体为Authorization，没有时为url. 请求在release之前不返回.
+     */
+    private Api api(CountDownLatch entered, RequestInterceptor interceptor) {
+        Client client = (request, options) -> {
+            sent.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Collection<String> authorization = request.headers().get("Authorization");
+            return Response.builder()
+                .status(200)
+                .reason("OK")
+                .headers(new HashMap<>())
+                .body(authorization != null ? authorization.iterator().next() : request.url(),
+                    StandardCharsets.UTF_8)
+                .build();
+        };
+        Api target = Feign.builder()
+            .client(client)
+            .requestInterceptor(interceptor)
+            .decoder(new StringDecoder())
+            .target(Api.class, URL);
+        return CoalescingInvocationHandler.wrap(Api.class, target,
+            new RequestCapture(Api.class, URL, new Encoder.Default(), Collections.emptyList()),
+            Collections.singletonList(interceptor), metrics, "Api");
+    }
+}
@@ -0,0 +1,71 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.netflix.hystrix.exception.HystrixTimeoutException;
+import feign.hystrix.FallbackFactory;
+import org.junit.Test;
+
+/**
+ * ConcurrencyLimitingInvocationHandler的测试，fallback的结果不能当作响应时间的样本.
+ *
+ * @author Ryan
+ */
+public class ConcurrencyLimitingInvocationHandlerTest {
+
+    public interface Api {
+
+        String call();
+    }
+
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+        properties());
+
+    private static ConcurrencyLimitProperties properties() {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setAdaptiveConcurrency(true);
+        properties.setInitialConcurrencyLimit(2);
+        properties.setMaxConcurrencyLimit(100);
+        return properties;
+    }
+
+    /**
+     * 立即返回的fallback结果不会把无负载RTT拉到很小，之后正常的响应不会让上限下降.
+     */
+    @Test
+    public void fallbackResultIsNotSampled() {
+        Api fallback = () -> "fallback";
+        Api api = ConcurrencyLimitingInvocationHandler.wrap(Api.class, fallback, fallback,
+            limiter, FeignMetrics.NOOP, "Api");
+        for (int i = 0; i < 100; i++) {
+            assertEquals("fallback", api.call());
+        }
+        assertEquals(2, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        for (int i = 0; i < 10; i++) {
+            limiter.onResponse(20_000_000, 200);
+        }
+        limiter.release();
+        limiter.release();
+        assertTrue(limiter.limit() > 2);
+    }
+
+    /**
+     * hystrix超时后调用fallback也算一次过载，普通的失败不影响上限.
+     */
+    @Test
+    public void swallowedTimeoutIsDropped() {
+        Api fallback = () -> "fallback";
+        FallbackFactory<Api> factory = ConcurrencyLimitingInvocationHandler.fallbackFactory(
+            fallback, limiter);
+
+        assertEquals("fallback", factory.create(new IllegalStateException("500")).call());
+        assertEquals(2, limiter.limit());
+        assertEquals("fallback", factory.create(new HystrixTimeoutException()).call());
+        assertEquals(1, limiter.limit());
+    }
+}
@@ -0,0 +1,110 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.netflix.config.ConfigurationManager;
+import com.sun.net.httpserver.HttpServer;
+import feign.RequestLine;
+import feign.codec.Decoder;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * 返回游标的方法超时后，丢弃的游标要关闭，连接还回连接池.
+ *
+ * @author Ryan
+ */
+public class CursorTimeoutTest {
+
+    private static final String KEY = "CursorApi.default";
+    private static final String PREFIX = "feign.endpointConfig." + KEY + ".";
+    private static final String HYSTRIX_TIMEOUT =
+        "hystrix.command.CursorApi#items.execution.isolation.thread.timeoutInMilliseconds";
+
+    public interface CursorApi extends Connector {
+
+        @RequestLine("GET /items")
+        Iterator<Integer> items();
+    }
+
+    private final CursorApi fallback = Collections::emptyIterator;
+    private final Map<String, Object> properties = new HashMap<>();
+    private HttpServer server;
+    private FeignFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/items", exchange -> {
+            byte[] body = "[1,2,3]".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        properties.put(PREFIX + "url", "http://localhost:" + server.getAddress().getPort());
+        properties.put(PREFIX + "readTimeoutMillis", "2000");
+        properties.put(PREFIX + "connectTimeoutMillis", "1000");
+    }
+
+    @After
+    public void tearDown() {
+        ConfigurationManager.getConfigInstance().clearProperty(HYSTRIX_TIMEOUT);
+        factory.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    public void lateCursorClosedByLightweight() throws Exception {
+        properties.put(PREFIX + "resilience", FeignFactory.RESILIENCE_LIGHTWEIGHT);
+        properties.put(PREFIX + "timeoutMillis", "200");
+        assertReleased();
+    }
+
+    @Test
+    public void lateCursorClosedAfterHystrixTimeout() throws Exception {
+        properties.put("feign.hystrixConfig." + HYSTRIX_TIMEOUT, "200");
+        assertReleased();
+    }
+
+    private void assertReleased() throws Exception {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        factory = new FeignFactory(environment, new HystrixConfigurationProperties(),
+            FeignMetrics.NOOP);
+        factory.initHystrixConfiguration();
+        Decoder jackson = new MyJacksonDecoder();
+        //解码在超时之后才完成，而且不响应中断
+        Decoder slow = (response, type) -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(400);
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+            return jackson.decode(response, type);
+        };
+        CursorApi api = factory.builder().decoder(slow).fallback(fallback)
+            .getConnector(CursorApi.class);
+
+        assertFalse(api.items().hasNext());
+        int leased = -1;
+        for (int i = 0; i < 100 && leased != 0; i++) {
+            TimeUnit.MILLISECONDS.sleep(20);
+            leased = factory.getPoolStats().get(KEY).getLeased();
+        }
+        assertEquals(0, leased);
+    }
+}
@@ -0,0 +1,97 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.netflix.config.ConfigurationManager;
+import feign.Client;
+import feign.RequestLine;
+import feign.Response;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * FeignFactory刷新配置的测试，新配置有错误时archaius和endpoint都保留原来的配置.
+ *
+ * @author Ryan
+ */
+public class FeignFactoryRefreshTest {
+
+    private static final String PREFIX = "feign.endpointConfig.RefreshApi.default.";
+    private static final String HYSTRIX_KEY =
+        "hystrix.command.RefreshApi.execution.isolation.thread.timeoutInMilliseconds";
+
+    public interface RefreshApi extends Connector {
+
+        @RequestLine("GET /ping")
+        String ping();
+    }
+
+    private final Map<String, Object> properties = new HashMap<>();
+    private final FeignFactory factory;
+
+    public FeignFactoryRefreshTest() {
+        properties.put(PREFIX + "url", "http://a");
+        properties.put(PREFIX + "readTimeoutMillis", "1000");
+        properties.put(PREFIX + "connectTimeoutMillis", "1000");
+        properties.put(PREFIX + "resilience", FeignFactory.RESILIENCE_LIGHTWEIGHT);
+        properties.put("feign.hystrixConfig." + HYSTRIX_KEY, "1000");
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        factory = new FeignFactory(environment, new HystrixConfigurationProperties(),
+            FeignMetrics.NOOP);
+        factory.initHystrixConfiguration();
+    }
+
+    @After
+    public void tearDown() {
+        ConfigurationManager.getConfigInstance().clearProperty(HYSTRIX_KEY);
+        factory.destroy();
+    }
+
+    @Test
+    public void invalidConfigKeepsOldConfig() {
+        Client client = (request, options) -> Response.builder()
+            .status(200)
+            .reason("OK")
+            .headers(new HashMap<>())
+            .body(request.url(), StandardCharsets.UTF_8)
+            .build();
+        RefreshApi api = factory.builder().client(client).stringDecoder()
+            .getConnector(RefreshApi.class);
+        assertEquals("http://a/ping", api.ping());
+
+        properties.put(PREFIX + "url", "http://b");
+        properties.put(PREFIX + "readTimeoutMillis", "1s");
+        properties.put("feign.hystrixConfig." + HYSTRIX_KEY, "2000");
+        assertFalse(factory.refresh());
+        assertEquals("http://a/ping", api.ping());
+        assertEquals("1000", ConfigurationManager.getConfigInstance().getString(HYSTRIX_KEY));
+
+        properties.put(PREFIX + "readTimeoutMillis", "2000");
+        assertTrue(factory.refresh());
+        assertEquals("http://b/ping", api.ping());
+        assertEquals("2000", ConfigurationManager.getConfigInstance().getString(HYSTRIX_KEY));
+    }
+
+    @Test(expected = FeignConfigurationException.class)
+    public void conversionErrorNamesTheKey() {
+        properties.put(PREFIX + "maxConnections", "many");
+        try {
+            new EndpointConfig(new StandardEnvironment() {
+                {
+                    getPropertySources().addFirst(new MapPropertySource("test", properties));
+                }
+            }, "RefreshApi.default");
+        } catch (FeignConfigurationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(PREFIX + "maxConnections"));
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import feign.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * HedgingClient的测试，落败和迟到的响应都要关闭，连接才能还回连接池.
+ *
+ * @author Ryan
+ */
+public class HedgingClientTest {
+
+    private static final String URL = "http://localhost/user";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final SimpleFeignMetrics metrics = new SimpleFeignMetrics();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 第一次请求慢，对冲请求先拿到响应，第一次的响应到达后被关闭.
+     */
+    @Test
+    public void hedgeWinsAndLoserClosed() throws Exception {
+        CountDownLatch slow = new CountDownLatch(1);
+        CountDownLatch loserClosed = new CountDownLatch(1);
+        Client server = (request, options) -> {
+            if (calls.incrementAndGet() == 1) {
+                awaitUninterruptibly(slow);
+                return response("slow", loserClosed);
+            }
+            return response("fast", new CountDownLatch(1));
+        };
+        HedgingClient client = client(server, 20, 10);
+
+        try (Response response = client.execute(request("GET"), new Options())) {
+            assertEquals("fast", Util.toString(response.body().asReader()));
+        }
+        slow.countDown();
+        assertTrue(loserClosed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+        //胜出的请求在响应交给调用方之后才计数
+        for (int i = 0; i < 100 && counter("won") == 0; i++) {
+            sleep(10);
+        }
+        assertEquals(1L, counter("won"));
+    }
+
+    /**
+     * 预算只够连续对冲10次，用完后慢请求不再发出第二次.
+     */
+    @Test
+    public void exhaustedBudgetStopsHedging() throws Exception {
+        Client server = (request, options) -> {
+            calls.incrementAndGet();
+            sleep(50);
+            return response("ok", new CountDownLatch(1));
+        };
+        HedgingClient client = client(server, 10, 0);
+
+        for (int i = 0; i < 11; i++) {
+            client.execute(request("GET"), new Options()).close();
+        }
+        assertEquals(10L, counter("sent"));
+        assertEquals(1L, counter("budget_exhausted"));
+        //落败的请求在executor上可能还没有返回
+        for (int i = 0; i < 100 && calls.get() < 21; i++) {
+            sleep(10);
+        }
+        assertEquals(21, calls.get());
+    }
+
+    /**
+     * POST会修改服务端状态，再慢也不对冲.
+     */
+    @Test
+    public void postNeverHedged() throws Exception {
+        Client server = (request, options) -> {
+            calls.incrementAndGet();
+            sleep(50);
+            return response("ok", new CountDownLatch(1));
+        };
+        HedgingClient client = client(server, 10, 10);
+
+        client.execute(request("POST"), new Options()).close();
+        assertEquals(1, calls.get());
+        assertEquals(0L, counter("sent"));
+    }
+
+    /**
+     * 等待时被中断(如hystrix超时)抛出InterruptedIOException，之后才到达的响应被关闭.
+     */
+    @Test
+    public void interruptClosesLateResponse() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch slow = new CountDownLatch(1);
+        CountDownLatch lateClosed = new CountDownLatch(1);
+        Client server = (request, options) -> {
+            calls.incrementAndGet();
+            entered.countDown();
+            awaitUninterruptibly(slow);
+            return response("late", lateClosed);
+        };
+        HedgingClient client = client(server, 10_000, 10);
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                client.execute(request("GET"), new Options()).close();
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        caller.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(5000);
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedIOException);
+
+        slow.countDown();
+        assertTrue(lateClosed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    private HedgingClient client(Client server, long hedgeDelayMillis, int hedgeBudgetPercent) {
+        String prefix = "feign.endpointConfig.Api.default.";
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(prefix + "url", URL);
+        properties.put(prefix + "readTimeoutMillis", "1000");
+        properties.put(prefix + "connectTimeoutMillis", "1000");
+        properties.put(prefix + "hedgeDelayMillis", String.valueOf(hedgeDelayMillis));
+        properties.put(prefix + "hedgeBudgetPercent", String.valueOf(hedgeBudgetPercent));
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        LiveEndpoint endpoint = new LiveEndpoint("Api.default",
+            new EndpointConfig(environment, "Api.default"), metrics);
+        return new HedgingClient(server, new HedgePolicy(endpoint, metrics, "Api"), executor);
+    }
+
+    private long counter(String outcome) {
+        Object value = metrics.snapshot()
+            .get(FeignMetrics.HEDGE + "{connector=Api,outcome=" + outcome + "}");
+        return value == null ? 0 : (Long) value;
+    }
+
+    private static Request request(String method) {
+        return Request.create(method, URL, Collections.emptyMap(), null, null);
+    }
+
+    /**
+     * 关闭响应体时countDown.
+     */
+    private static Response response(String body, CountDownLatch closed) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return Response.builder()
+            .status(200)
+            .reason("OK")
+            .headers(new HashMap<>())
+            .body(new ByteArrayInputStream(bytes) {
+                @Override
+                public void close() throws IOException {
+                    closed.countDown();
+                    super.close();
+                }
+            }, bytes.length)
+            .build();
+    }
+
+    /**
+     * 和阻塞的client一样，不响应中断.
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
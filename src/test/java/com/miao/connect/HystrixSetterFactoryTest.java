@@ -0,0 +1,58 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+
+import feign.Target.HardCodedTarget;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * HystrixSetterFactory的测试，只按构建的endpoint的配置注册它负责的方法的线程池.
+ *
+ * @author Ryan
+ */
+public class HystrixSetterFactoryTest {
+
+    public interface Api {
+
+        String first();
+
+        String second();
+    }
+
+    private final SimpleFeignMetrics metrics = new SimpleFeignMetrics();
+    private final ThreadPoolSizer sizer = new ThreadPoolSizer(metrics);
+
+    @After
+    public void tearDown() {
+        sizer.close();
+    }
+
+    @Test
+    public void onlyOwnedMethodRegistered() {
+        ThreadPoolProperties properties = new ThreadPoolProperties();
+        properties.setThreadPoolPerMethod(true);
+        HystrixSetterFactory setterFactory = new HystrixSetterFactory(properties, sizer,
+            method -> method.getName().equals("second"));
+        HardCodedTarget<Api> target = new HardCodedTarget<>(Api.class, "http://localhost");
+        for (Method method : Api.class.getMethods()) {
+            setterFactory.create(target, method);
+        }
+        assertEquals(Collections.singleton("Api#second"), registeredPools());
+    }
+
+    private Set<String> registeredPools() {
+        Set<String> pools = new TreeSet<>();
+        String prefix = FeignMetrics.THREAD_POOL_SIZE + "{connector=";
+        for (String name : metrics.snapshot().keySet()) {
+            if (name.startsWith(prefix)) {
+                pools.add(name.substring(prefix.length(), name.indexOf('}')));
+            }
+        }
+        return pools;
+    }
+}
@@ -0,0 +1,87 @@
+package com.miao.connect;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * ResilientInvocationHandler的测试.
+ *
+ * @author Ryan
+ */
+public class ResilientInvocationHandlerTest {
+
+    public interface Api {
+
+        String call();
+    }
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 半开状态下并发已满被拒绝的调用不能用掉试探名额，并发空出来后试探调用成功，熔断器关闭.
+     */
+    @Test
+    public void halfOpenProbeRejectedByFullBulkhead() throws Exception {
+        ResilienceProperties properties = new ResilienceProperties();
+        properties.setTimeoutMillis(10000);
+        properties.setMaxConcurrentCalls(2);
+        properties.setRingBufferSize(2);
+        properties.setWaitDurationInOpenStateMillis(50);
+        properties.setPermittedCallsInHalfOpenState(1);
+
+        AtomicInteger targetCalls = new AtomicInteger();
+        Api target = () -> {
+            if (targetCalls.incrementAndGet() <= 2) {
+                throw new IllegalStateException("down");
+            }
+            return "ok";
+        };
+        //前两次fallback一直占着并发数，直到release
+        CountDownLatch blocked = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fallbackCalls = new AtomicInteger();
+        Api fallback = () -> {
+            if (fallbackCalls.incrementAndGet() <= 2) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "fallback";
+        };
+        Api api = ResilientInvocationHandler.wrap(Api.class, target, fallback, properties,
+            new SimpleFeignMetrics(), "Api");
+
+        //两次失败打开熔断器，fallback没有返回前并发数一直是满的
+        Future<String> first = executor.submit(api::call);
+        Future<String> second = executor.submit(api::call);
+        blocked.await(5, TimeUnit.SECONDS);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertEquals("fallback", api.call());
+        assertEquals(2, targetCalls.get());
+
+        release.countDown();
+        assertEquals("fallback", first.get(5, TimeUnit.SECONDS));
+        assertEquals("fallback", second.get(5, TimeUnit.SECONDS));
+
+        assertEquals("ok", api.call());
+        assertEquals("ok", api.call());
+        assertEquals(4, targetCalls.get());
+    }
+}